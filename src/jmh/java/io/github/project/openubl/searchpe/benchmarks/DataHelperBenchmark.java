@@ -0,0 +1,116 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.benchmarks;
+
+import io.github.project.openubl.searchpe.models.jpa.entity.EstadoContribuyente;
+import io.github.project.openubl.searchpe.utils.DataHelper;
+import io.github.project.openubl.searchpe.utils.FileHelper;
+import io.github.project.openubl.searchpe.utils.PadronParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per line cost of the import hot path. Every invocation handles a single line of the padrón,
+ * so the reported throughput is in lines per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataHelperBenchmark {
+
+    @Param("padron_reducido_ruc.zip")
+    String padron;
+
+    private String[] lines;
+    private String[][] columns;
+    private char[][] chars;
+    private String[] estados;
+
+    private final PadronParser parser = new PadronParser();
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        List<String> result = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(FileHelper.openZipEntry(new File(padron), "txt")))) {
+            reader.readLine(); // Header
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    result.add(line);
+                }
+            }
+        }
+
+        lines = result.toArray(new String[0]);
+        columns = new String[lines.length][];
+        chars = new char[lines.length][];
+        estados = new String[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            columns[i] = DataHelper.readLine(lines[i], PadronParser.COLUMNS);
+            // Terminated like in the file, otherwise the parser grows its buffer to append the '\n' on every call
+            chars[i] = (lines[i] + "\n").toCharArray();
+            estados[i] = columns[i][PadronParser.ESTADO_CONTRIBUYENTE] != null ? columns[i][PadronParser.ESTADO_CONTRIBUYENTE] : "ACTIVO";
+        }
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == lines.length ? 0 : index + 1;
+        return index;
+    }
+
+    @Benchmark
+    public String[] readLine() {
+        return DataHelper.readLine(lines[nextIndex()], PadronParser.COLUMNS);
+    }
+
+    @Benchmark
+    public Optional<?> buildContribuyenteEntityFromColumns() {
+        return DataHelper.buildContribuyenteEntity(1L, columns[nextIndex()]);
+    }
+
+    /**
+     * Includes splitting the line with {@link PadronParser}, the only way to get a row.
+     */
+    @Benchmark
+    public Object buildContribuyenteEntityFromRow() throws IOException {
+        char[] line = chars[nextIndex()];
+        parser.reset(line, 0, line.length);
+        parser.nextRow();
+
+        PadronParser.Row row = parser.getRow();
+        return DataHelper.isValid(row) ? DataHelper.buildContribuyenteEntity(1L, row) : null;
+    }
+
+    @Benchmark
+    public Optional<EstadoContribuyente> estadoContribuyenteFromString() {
+        return EstadoContribuyente.fromString(estados[nextIndex()]);
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.benchmarks;
+
+import io.github.project.openubl.searchpe.loaders.ContribuyenteLoader;
+import io.github.project.openubl.searchpe.loaders.ImportCheckpoint;
+import io.github.project.openubl.searchpe.loaders.ImportPipeline;
+import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteEntity;
+import io.github.project.openubl.searchpe.utils.DataHelper;
+import io.github.project.openubl.searchpe.utils.FileHelper;
+import io.github.project.openubl.searchpe.utils.PadronParser;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole file operations over a padrón zip. Besides the operations per second, the 'lines' counter
+ * reports the throughput in lines per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PadronBenchmark {
+
+    @Param("padron_reducido_ruc.zip")
+    String padron;
+
+    @Param({"2"})
+    int threads;
+
+    private File zipFile;
+    private Path unzipFolder;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Lines {
+        public long lines;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            lines = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        zipFile = new File(padron);
+        unzipFolder = Files.createTempDirectory("searchpe-benchmark");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(unzipFolder.toFile());
+    }
+
+    @Benchmark
+    public void unzipFile() throws IOException {
+        FileHelper.unzipFile(zipFile, unzipFolder);
+    }
+
+    /**
+     * Stream the zip entry and build every valid row, as a single threaded import does before loading.
+     */
+    @Benchmark
+    public void parse(Lines lines, Blackhole blackhole) throws IOException {
+        try (Reader reader = new InputStreamReader(FileHelper.openZipEntry(zipFile, "txt"))) {
+            PadronParser parser = new PadronParser(reader);
+            lines.lines += parser.parse(true, row -> {
+                if (DataHelper.isValid(row)) {
+                    blackhole.consume(DataHelper.buildContribuyenteEntity(1L, row));
+                }
+            });
+        }
+    }
+
+    /**
+     * Same as {@link #parse(Lines, Blackhole)} through the {@link ImportPipeline}, with loaders discarding the rows.
+     * Only valid rows are counted as lines here.
+     */
+    @Benchmark
+    public void importPipeline(Lines lines) throws IOException {
+        ImportPipeline pipeline = new ImportPipeline(
+                1L,
+                DiscardingLoader::new,
+                row -> true,
+                records -> {
+                },
+                Collections.emptyMap(),
+                threads,
+                threads,
+                threads * 2
+        );
+
+        try (Reader reader = new InputStreamReader(FileHelper.openZipEntry(zipFile, "txt"))) {
+            lines.lines += pipeline.run(reader);
+        }
+    }
+
+    /**
+     * Rows already escaped into the batches of the pipeline, so they can not be optimized away.
+     */
+    static class DiscardingLoader implements ContribuyenteLoader {
+        @Override
+        public void load(ContribuyenteEntity contribuyente) {
+        }
+
+        @Override
+        public void commit(ImportCheckpoint checkpoint) {
+        }
+
+        @Override
+        public boolean isIndexing() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
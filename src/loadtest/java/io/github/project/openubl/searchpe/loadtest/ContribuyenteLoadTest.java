@@ -0,0 +1,158 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.loadtest;
+
+import io.github.project.openubl.searchpe.managers.UpgradeDataManager;
+import io.github.project.openubl.searchpe.models.jpa.VersionRepository;
+import io.github.project.openubl.searchpe.models.jpa.entity.Status;
+import io.github.project.openubl.searchpe.models.jpa.entity.VersionEntity;
+import io.github.project.openubl.searchpe.resources.config.ElasticsearchServer;
+import io.github.project.openubl.searchpe.resources.config.PostgreSQLServer;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.common.http.TestHTTPResource;
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Inject;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Load test of the contribuyentes endpoints, only run by the 'loadtest' profile:
+ * <pre>
+ * mvn -Ploadtest test -Dloadtest.records=500000 -Dloadtest.concurrency=32
+ * </pre>
+ * The dataset is generated from a fixed seed, so runs with the same parameters are comparable across releases.
+ */
+@QuarkusTest
+@QuarkusTestResource(ElasticsearchServer.class)
+@QuarkusTestResource(PostgreSQLServer.class)
+public class ContribuyenteLoadTest {
+
+    static final long SEED = 20190101L;
+
+    static final String[] WORDS = {
+            "ANDINA", "PERUANA", "INVERSIONES", "CONSTRUCTORA", "COMERCIAL", "INDUSTRIAS", "SERVICIOS", "GRUPO",
+            "DISTRIBUIDORA", "CORPORACION", "NEGOCIOS", "TRANSPORTES", "AGRICOLA", "MINERA", "PESQUERA", "TEXTIL",
+            "INMOBILIARIA", "LOGISTICA", "SOLUCIONES", "TECNOLOGIA", "PACIFICO", "SUR", "NORTE", "LIMA",
+            "AREQUIPA", "CUSCO", "TRUJILLO", "PIURA", "SAN", "MARTIN", "SANTA", "ROSA"
+    };
+    static final String[] SUFFIXES = {"S.A.", "S.A.C.", "E.I.R.L.", "S.R.L."};
+
+    final int records = Integer.getInteger("loadtest.records", 200000);
+    final int concurrency = Integer.getInteger("loadtest.concurrency", 16);
+    final Duration warmup = Duration.ofSeconds(Long.getLong("loadtest.warmup-seconds", 10));
+    final Duration duration = Duration.ofSeconds(Long.getLong("loadtest.duration-seconds", 60));
+
+    // Elasticsearch rejects offset + limit above 'index.max_result_window', 10000 by default
+    final int maxOffset = Integer.getInteger("loadtest.max-offset", 9990);
+
+    final String version = System.getProperty("loadtest.version", "SNAPSHOT");
+    final Path outputDirectory = Paths.get(System.getProperty("loadtest.output", "target/loadtest"));
+
+    @TestHTTPResource("/contribuyentes")
+    URL contribuyentesUrl;
+
+    @Inject
+    VersionRepository versionRepository;
+
+    @Inject
+    UpgradeDataManager upgradeDataManager;
+
+    @Test
+    public void contribuyentes() throws Exception {
+        seed();
+
+        String baseUri = contribuyentesUrl.toString();
+        LoadGenerator generator = new LoadGenerator(concurrency, warmup, duration);
+        LoadTestReport report = new LoadTestReport(version, records);
+
+        report.add(generator.run("get-by-ruc", () -> URI.create(baseUri + "/" + ruc(random().nextInt(records)))));
+        report.add(generator.run("filter-text", () -> URI.create(baseUri + "?filterText=" + WORDS[random().nextInt(WORDS.length)])));
+        report.add(generator.run("deep-offset", () -> URI.create(baseUri + "?limit=10&offset=" + random().nextInt(maxOffset + 1))));
+        report.add(generator.run("sort", () -> URI.create(baseUri
+                + "?filterText=" + WORDS[random().nextInt(WORDS.length)]
+                + "&sort_by=razonSocial:" + (random().nextBoolean() ? "asc" : "desc")
+                + "&offset=" + random().nextInt(1000)
+        )));
+
+        report.write(outputDirectory, duration.getSeconds());
+    }
+
+    /**
+     * Import a generated padrón through the same path used by the scheduled upgrades.
+     */
+    void seed() throws IOException {
+        VersionEntity versionEntity = VersionEntity.Builder.aVersionEntity()
+                .withStatus(Status.IMPORTING)
+                .withCreatedAt(new Date())
+                .withUpdatedAt(new Date())
+                .build();
+        versionRepository.persist(versionEntity);
+
+        File file = generatePadron();
+        try {
+            upgradeDataManager.createContribuyentesFromFile(versionEntity.id, file);
+        } finally {
+            Files.deleteIfExists(file.toPath());
+        }
+
+        VersionEntity imported = versionRepository.findById(versionEntity.id);
+        assertEquals(Status.COMPLETED, imported.status);
+        assertEquals(records, imported.records);
+    }
+
+    File generatePadron() throws IOException {
+        Path file = Files.createTempFile("padron-loadtest", ".txt");
+        Random random = new Random(SEED);
+
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("RUC|NOMBRE O RAZON SOCIAL|ESTADO DEL CONTRIBUYENTE|CONDICION DE DOMICILIO|UBIGEO|TIPO DE VIA|NOMBRE DE VIA|CODIGO DE ZONA|TIPO DE ZONA|NUMERO|INTERIOR|LOTE|DEPARTAMENTO|MANZANA|KILOMETRO|\n");
+            for (int i = 0; i < records; i++) {
+                String razonSocial = WORDS[random.nextInt(WORDS.length)] + " "
+                        + WORDS[random.nextInt(WORDS.length)] + " "
+                        + WORDS[random.nextInt(WORDS.length)] + " "
+                        + SUFFIXES[random.nextInt(SUFFIXES.length)];
+                writer.write(ruc(i) + "|" + razonSocial + "|ACTIVO|HABIDO|150101|AV.|" + WORDS[random.nextInt(WORDS.length)] + "|-|-|" + random.nextInt(2000) + "|-|-|-|-|-|\n");
+            }
+        }
+
+        return file.toFile();
+    }
+
+    static String ruc(int index) {
+        return String.format("20%09d", index);
+    }
+
+    static ThreadLocalRandom random() {
+        return ThreadLocalRandom.current();
+    }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.jboss.logging.Logger;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Closed loop load generator: a fixed number of workers send GET requests back to back, each one
+ * waiting for the previous response. Latencies of the requests sent after the warmup are recorded
+ * in microseconds.
+ */
+public class LoadGenerator {
+
+    private static final Logger LOGGER = Logger.getLogger(LoadGenerator.class);
+
+    // One hour, anything slower is recorded as one hour
+    private static final long HIGHEST_TRACKABLE_MICROS = 3_600_000_000L;
+
+    private final HttpClient client;
+    private final int concurrency;
+    private final Duration warmup;
+    private final Duration duration;
+
+    public LoadGenerator(int concurrency, Duration warmup, Duration duration) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        this.concurrency = concurrency;
+        this.warmup = warmup;
+        this.duration = duration;
+    }
+
+    /**
+     * @param requests URI of the next request, called concurrently by every worker
+     */
+    public Result run(String scenario, Supplier<URI> requests) throws InterruptedException {
+        LOGGER.infof("Running scenario %s with %s workers for %s after a warmup of %s", scenario, concurrency, duration, warmup);
+
+        Recorder recorder = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+        AtomicLong errors = new AtomicLong();
+
+        long startNanos = System.nanoTime();
+        long measureFromNanos = startNanos + warmup.toNanos();
+        long endNanos = measureFromNanos + duration.toNanos();
+
+        CountDownLatch finished = new CountDownLatch(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    long now;
+                    while ((now = System.nanoTime()) < endNanos) {
+                        boolean failed = !send(requests.get());
+                        long latencyNanos = System.nanoTime() - now;
+
+                        if (now >= measureFromNanos) {
+                            recorder.recordValue(Math.min(latencyNanos / 1000, HIGHEST_TRACKABLE_MICROS));
+                            if (failed) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    }
+                } finally {
+                    finished.countDown();
+                }
+            }, "searchpe-loadtest-" + scenario + "-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        finished.await();
+
+        Histogram histogram = recorder.getIntervalHistogram();
+        Result result = new Result(scenario, concurrency, histogram, errors.get(), duration);
+        LOGGER.infof("Scenario %s: %s", scenario, result);
+        return result;
+    }
+
+    private boolean send(URI uri) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Accept", "application/json")
+                .timeout(Duration.ofSeconds(60))
+                .GET()
+                .build();
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() == 200;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            LOGGER.debugf(e, "Request %s failed", uri);
+            return false;
+        }
+    }
+
+    public static class Result {
+        private final String scenario;
+        private final int concurrency;
+        private final Histogram histogram;
+        private final long errors;
+        private final Duration duration;
+
+        public Result(String scenario, int concurrency, Histogram histogram, long errors, Duration duration) {
+            this.scenario = scenario;
+            this.concurrency = concurrency;
+            this.histogram = histogram;
+            this.errors = errors;
+            this.duration = duration;
+        }
+
+        public String getScenario() {
+            return scenario;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        /**
+         * @return latencies in microseconds
+         */
+        public Histogram getHistogram() {
+            return histogram;
+        }
+
+        public long getRequests() {
+            return histogram.getTotalCount();
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public double getThroughput() {
+            return histogram.getTotalCount() / (duration.toMillis() / 1000.0);
+        }
+
+        public double getPercentileMillis(double percentile) {
+            return histogram.getValueAtPercentile(percentile) / 1000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d requests, %d errors, %.1f req/s, p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms",
+                    getRequests(), errors, getThroughput(),
+                    getPercentileMillis(50), getPercentileMillis(99), getPercentileMillis(99.9),
+                    histogram.getMaxValue() / 1000.0
+            );
+        }
+    }
+
+}
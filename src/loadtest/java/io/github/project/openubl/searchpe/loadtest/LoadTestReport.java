@@ -0,0 +1,93 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.loadtest;
+
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes the results of a load test run into a folder named after the release:
+ * <ul>
+ *     <li>'summary.csv' with one line per scenario, meant to be diffed or plotted across releases</li>
+ *     <li>'&lt;scenario&gt;.hgrm' with the full latency distribution in milliseconds, in the format read by the HdrHistogram plotter</li>
+ * </ul>
+ */
+public class LoadTestReport {
+
+    private static final Logger LOGGER = Logger.getLogger(LoadTestReport.class);
+
+    static final String CSV_HEADER = "version,records,scenario,concurrency,duration_seconds,requests,errors,throughput_rps,p50_ms,p99_ms,p999_ms,max_ms";
+
+    private final String version;
+    private final int records;
+    private final List<LoadGenerator.Result> results = new ArrayList<>();
+
+    public LoadTestReport(String version, int records) {
+        this.version = version;
+        this.records = records;
+    }
+
+    public void add(LoadGenerator.Result result) {
+        results.add(result);
+    }
+
+    public Path write(Path outputDirectory, long durationSeconds) throws IOException {
+        Path directory = outputDirectory.resolve(version);
+        Files.createDirectories(directory);
+
+        Path summary = directory.resolve("summary.csv");
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(summary, StandardCharsets.UTF_8))) {
+            writer.println(CSV_HEADER);
+            for (LoadGenerator.Result result : results) {
+                writer.println(String.format(Locale.ROOT, "%s,%d,%s,%d,%d,%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f",
+                        version,
+                        records,
+                        result.getScenario(),
+                        result.getConcurrency(),
+                        durationSeconds,
+                        result.getRequests(),
+                        result.getErrors(),
+                        result.getThroughput(),
+                        result.getPercentileMillis(50),
+                        result.getPercentileMillis(99),
+                        result.getPercentileMillis(99.9),
+                        result.getHistogram().getMaxValue() / 1000.0
+                ));
+            }
+        }
+
+        for (LoadGenerator.Result result : results) {
+            Path distribution = directory.resolve(result.getScenario() + ".hgrm");
+            try (PrintStream out = new PrintStream(Files.newOutputStream(distribution), false, StandardCharsets.UTF_8.name())) {
+                result.getHistogram().outputPercentileDistribution(out, 1000.0);
+            }
+        }
+
+        LOGGER.infof("Load test report written to %s", directory.toAbsolutePath());
+        return directory;
+    }
+
+}
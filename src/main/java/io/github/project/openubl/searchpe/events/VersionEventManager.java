@@ -16,6 +16,7 @@
  */
 package io.github.project.openubl.searchpe.events;
 
+import io.github.project.openubl.searchpe.managers.ActiveVersionManager;
 import io.github.project.openubl.searchpe.models.VersionEvent;
 import io.github.project.openubl.searchpe.models.jpa.entity.Status;
 import io.github.project.openubl.searchpe.models.jpa.entity.VersionEntity;
@@ -35,6 +36,9 @@ public class VersionEventManager {
     @Inject
     UserTransaction tx;
 
+    @Inject
+    ActiveVersionManager activeVersionManager;
+
     void updateStatus(Long versionId, Status status) {
         try {
             tx.begin();
@@ -45,6 +49,7 @@ public class VersionEventManager {
             version.persist();
 
             tx.commit();
+            activeVersionManager.invalidate(version);
         } catch (NotSupportedException | HeuristicRollbackException | HeuristicMixedException | RollbackException | SystemException e) {
             try {
                 tx.rollback();
@@ -58,6 +63,25 @@ public class VersionEventManager {
         updateStatus(event.getVersion(), Status.DOWNLOADING);
     }
 
+    public void onDownloadProgress(@Observes VersionEvent.DownloadProgressEvent event) {
+        try {
+            tx.begin();
+
+            VersionEntity version = VersionEntity.findById(event.getVersion());
+            version.downloadedBytes = event.getDownloadedBytes();
+            version.updatedAt = new Date();
+            version.persist();
+
+            tx.commit();
+        } catch (NotSupportedException | HeuristicRollbackException | HeuristicMixedException | RollbackException | SystemException e) {
+            try {
+                tx.rollback();
+            } catch (SystemException se) {
+                LOGGER.error(se);
+            }
+        }
+    }
+
     public void onUnzipping(@Observes VersionEvent.UnzippingFileEvent event) {
         updateStatus(event.getVersion(), Status.UNZIPPING);
     }
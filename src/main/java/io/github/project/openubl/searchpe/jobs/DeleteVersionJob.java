@@ -16,25 +16,45 @@
  */
 package io.github.project.openubl.searchpe.jobs;
 
+import io.github.project.openubl.searchpe.managers.ActiveVersionManager;
+import io.github.project.openubl.searchpe.managers.ContribuyenteCacheManager;
+import io.github.project.openubl.searchpe.managers.IndexManager;
+import io.github.project.openubl.searchpe.managers.RucIndexManager;
 import io.github.project.openubl.searchpe.managers.VersionManager;
 import io.github.project.openubl.searchpe.models.jpa.entity.VersionEntity;
 import io.quarkus.runtime.annotations.RegisterForReflection;
 import io.quarkus.scheduler.Scheduled;
+import org.jboss.logging.Logger;
 import org.quartz.*;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
+import java.io.IOException;
 import java.util.UUID;
 
 @ApplicationScoped
 public class DeleteVersionJob {
 
+    private static final Logger LOGGER = Logger.getLogger(DeleteVersionJob.class);
+
     @Inject
     Scheduler quartz;
 
     @Inject
     VersionManager versionManager;
 
+    @Inject
+    ActiveVersionManager activeVersionManager;
+
+    @Inject
+    IndexManager indexManager;
+
+    @Inject
+    ContribuyenteCacheManager contribuyenteCacheManager;
+
+    @Inject
+    RucIndexManager rucIndexManager;
+
     public void trigger(VersionEntity version) throws SchedulerException {
         String versionId = String.valueOf(version.id);
 
@@ -56,6 +76,18 @@ public class DeleteVersionJob {
 
     void deleteVersion(Long versionId) {
         versionManager.deleteVersion(versionId);
+        activeVersionManager.invalidate();
+        contribuyenteCacheManager.invalidateAll();
+        rucIndexManager.delete(versionId);
+
+        try {
+            Long activeVersionId = activeVersionManager.getActiveVersion().map(f -> f.id).orElse(null);
+            indexManager.deleteVersionIndex(versionId, activeVersionId);
+            // Other nodes were notified when the version was deleted, before the alias moved
+            versionManager.notifyVersionChanged(versionId);
+        } catch (IOException e) {
+            LOGGER.error(e);
+        }
     }
 
     @RegisterForReflection
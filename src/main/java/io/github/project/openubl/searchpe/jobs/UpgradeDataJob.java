@@ -47,6 +47,9 @@ public class UpgradeDataJob {
         String jobId = UUID.randomUUID().toString();
         JobDetail job = JobBuilder.newJob(MyJob.class)
                 .withIdentity(jobId, "ImportData")
+                .usingJobData("versionId", versionId)
+                // Re-executed if the node running it dies, see UpgradeDataManager#resume
+                .requestRecovery()
                 .build();
         Trigger trigger = TriggerBuilder.newTrigger()
                 .withIdentity(jobId, "ImportData")
@@ -84,13 +87,22 @@ public class UpgradeDataJob {
             return;
         }
 
-        upgradeDataManager.upgrade(version.id);
+        // Run as a Quartz job so the import can be recovered
+        try {
+            trigger(version);
+        } catch (SchedulerException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     void upgradeData(Long versionId) {
         upgradeDataManager.upgrade(versionId);
     }
 
+    void resumeData(Long versionId) {
+        upgradeDataManager.resume(versionId);
+    }
+
     @RegisterForReflection
     public static class MyJob implements Job {
         @Inject
@@ -98,8 +110,13 @@ public class UpgradeDataJob {
 
         @Override
         public void execute(JobExecutionContext context) throws JobExecutionException {
-            String versionId = (String) context.getTrigger().getJobDataMap().get("versionId");
-            job.upgradeData(Long.valueOf(versionId));
+            // The recovery trigger might not carry the data of the original trigger
+            String versionId = (String) context.getMergedJobDataMap().get("versionId");
+            if (context.isRecovering()) {
+                job.resumeData(Long.valueOf(versionId));
+            } else {
+                job.upgradeData(Long.valueOf(versionId));
+            }
         }
     }
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.loaders;
+
+import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteEntity;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes contribuyentes of a version into the database.
+ * Rows are not guaranteed to be persisted until {@link #commit(ImportCheckpoint)} is called,
+ * closing a loader discards any row loaded after the last commit.
+ */
+public interface ContribuyenteLoader extends Closeable {
+
+    void load(ContribuyenteEntity contribuyente) throws IOException;
+
+    /**
+     * @param checkpoint if not null, persisted in the same transaction as the rows
+     */
+    void commit(ImportCheckpoint checkpoint) throws IOException;
+
+    /**
+     * @return true if the rows written by this loader were already indexed in Elasticsearch
+     */
+    boolean isIndexing();
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.loaders;
+
+import io.agroal.api.AgroalDataSource;
+import io.github.project.openubl.searchpe.managers.DictionaryManager;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.transaction.UserTransaction;
+
+@ApplicationScoped
+public class ContribuyenteLoaderFactory {
+
+    @ConfigProperty(name = "searchpe.import.loader", defaultValue = "COPY")
+    LoaderType loaderType;
+
+    @ConfigProperty(name = "searchpe.import.automatic-indexing", defaultValue = "false")
+    boolean automaticIndexing;
+
+    @Inject
+    UserTransaction tx;
+
+    @Inject
+    EntityManager entityManager;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Inject
+    DictionaryManager dictionaryManager;
+
+    @Inject
+    MeterRegistry registry;
+
+    private Timer commitTimer;
+    private Counter committedRows;
+
+    @PostConstruct
+    void init() {
+        commitTimer = Timer.builder("searchpe.import.commit")
+                .description("Latency of committing a batch of contribuyentes into the database")
+                .tag("loader", loaderType.name())
+                .publishPercentileHistogram()
+                .register(registry);
+        committedRows = Counter.builder("searchpe.import.committed")
+                .description("Contribuyentes committed into the database")
+                .baseUnit("rows")
+                .register(registry);
+    }
+
+    public ContribuyenteLoader create() {
+        return new MeteredContribuyenteLoader(createLoader(), commitTimer, committedRows);
+    }
+
+    private ContribuyenteLoader createLoader() {
+        switch (loaderType) {
+            case JPA:
+                return new JpaContribuyenteLoader(tx, entityManager, automaticIndexing);
+            case COPY:
+                return new CopyContribuyenteLoader(dataSource, dictionaryManager);
+            default:
+                throw new IllegalStateException("Unsupported loader " + loaderType);
+        }
+    }
+
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.loaders;
+
+import io.github.project.openubl.searchpe.managers.DictionaryManager;
+import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteEntity;
+import io.github.project.openubl.searchpe.models.jpa.entity.Dictionary;
+import org.jboss.logging.Logger;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Streams rows into the CONTRIBUYENTE table using PostgreSQL 'COPY FROM STDIN' in text format.
+ * Rows bypass Hibernate, so neither the persistence context nor Hibernate Search see them.
+ * Dictionary columns are written as codes, new values are added to their dictionary on the way.
+ */
+public class CopyContribuyenteLoader implements ContribuyenteLoader {
+
+    private static final Logger LOGGER = Logger.getLogger(CopyContribuyenteLoader.class);
+
+    public static final String COPY_SQL = "COPY contribuyente (" +
+            "version_id, ruc, razon_social, estado_contribuyente, condicion_domicilio, ubigeo, " +
+            "tipo_via, nombre_via, codigo_zona, tipo_zona, numero, interior, lote, departamento, manzana, kilometro, row_hash" +
+            ") FROM STDIN";
+
+    public static final String CHECKPOINT_SQL = "INSERT INTO import_checkpoint (version_id, block, end_position, records) VALUES (?, ?, ?, ?)";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DataSource dataSource;
+    private final DictionaryManager dictionaryManager;
+    private final StringBuilder buffer = new StringBuilder(BUFFER_SIZE + 1024);
+
+    private Connection connection;
+    private CopyManager copyManager;
+    private CopyIn copyIn;
+
+    public CopyContribuyenteLoader(DataSource dataSource, DictionaryManager dictionaryManager) {
+        this.dataSource = dataSource;
+        this.dictionaryManager = dictionaryManager;
+    }
+
+    @Override
+    public void load(ContribuyenteEntity contribuyente) throws IOException {
+        try {
+            if (copyIn == null) {
+                begin();
+            }
+
+            appendRow(buffer, contribuyente, dictionaryManager);
+            if (buffer.length() >= BUFFER_SIZE) {
+                flushBuffer();
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void commit(ImportCheckpoint checkpoint) throws IOException {
+        if (copyIn == null && checkpoint == null) {
+            return;
+        }
+
+        try {
+            if (copyIn != null) {
+                flushBuffer();
+                copyIn.endCopy();
+                copyIn = null;
+            }
+            if (checkpoint != null) {
+                openConnection();
+                try (PreparedStatement statement = connection.prepareStatement(CHECKPOINT_SQL)) {
+                    statement.setLong(1, checkpoint.getVersionId());
+                    statement.setLong(2, checkpoint.getBlock());
+                    statement.setLong(3, checkpoint.getEndPosition());
+                    statement.setInt(4, checkpoint.getRecords());
+                    statement.executeUpdate();
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public boolean isIndexing() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+        buffer.setLength(0);
+
+        try {
+            if (copyIn != null && copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        } catch (SQLException e) {
+            LOGGER.error(e);
+        } finally {
+            copyIn = null;
+        }
+
+        if (connection != null) {
+            try {
+                connection.rollback();
+                connection.close();
+            } catch (SQLException e) {
+                LOGGER.error(e);
+            } finally {
+                connection = null;
+            }
+        }
+    }
+
+    private void begin() throws SQLException {
+        openConnection();
+        copyIn = copyManager.copyIn(COPY_SQL);
+    }
+
+    private void openConnection() throws SQLException {
+        if (connection == null) {
+            connection = dataSource.getConnection();
+            connection.setAutoCommit(false);
+            copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+        }
+    }
+
+    private void flushBuffer() throws SQLException {
+        if (buffer.length() == 0) {
+            return;
+        }
+
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    static void appendRow(StringBuilder sb, ContribuyenteEntity contribuyente, DictionaryManager dictionaryManager) {
+        sb.append(contribuyente.id.versionId);
+        appendColumn(sb, contribuyente.id.ruc);
+        appendColumn(sb, contribuyente.razonSocial);
+        appendCode(sb, dictionaryManager, Dictionary.ESTADO_CONTRIBUYENTE, contribuyente.estadoContribuyente);
+        appendCode(sb, dictionaryManager, Dictionary.CONDICION_DOMICILIO, contribuyente.condicionDomicilio);
+        appendCode(sb, dictionaryManager, Dictionary.UBIGEO, contribuyente.ubigeo);
+        appendCode(sb, dictionaryManager, Dictionary.TIPO_VIA, contribuyente.tipoVia);
+        appendColumn(sb, contribuyente.nombreVia);
+        appendColumn(sb, contribuyente.codigoZona);
+        appendCode(sb, dictionaryManager, Dictionary.TIPO_ZONA, contribuyente.tipoZona);
+        appendColumn(sb, contribuyente.numero);
+        appendColumn(sb, contribuyente.interior);
+        appendColumn(sb, contribuyente.lote);
+        appendColumn(sb, contribuyente.departamento);
+        appendColumn(sb, contribuyente.manzana);
+        appendColumn(sb, contribuyente.kilometro);
+        sb.append('\t');
+        if (contribuyente.rowHash != null) {
+            sb.append(contribuyente.rowHash.longValue());
+        } else {
+            sb.append("\\N");
+        }
+        sb.append('\n');
+    }
+
+    private static void appendCode(StringBuilder sb, DictionaryManager dictionaryManager, Dictionary dictionary, String value) {
+        sb.append('\t');
+        if (value == null) {
+            sb.append("\\N");
+        } else {
+            sb.append(dictionaryManager.encode(dictionary, value));
+        }
+    }
+
+    /**
+     * Appends a column using the escaping rules of the COPY text format
+     */
+    private static void appendColumn(StringBuilder sb, String value) {
+        sb.append('\t');
+        if (value == null) {
+            sb.append("\\N");
+            return;
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.loaders;
+
+/**
+ * Block of the padrón whose rows are committed, stored in IMPORT_CHECKPOINT within the same transaction as the rows.
+ */
+public class ImportCheckpoint {
+
+    private final Long versionId;
+    private final long block;
+    private final long endPosition;
+    private final int records;
+
+    public ImportCheckpoint(Long versionId, long block, long endPosition, int records) {
+        this.versionId = versionId;
+        this.block = block;
+        this.endPosition = endPosition;
+        this.records = records;
+    }
+
+    public Long getVersionId() {
+        return versionId;
+    }
+
+    /**
+     * @return index of the block, blocks are numbered from the beginning of the padrón
+     */
+    public long getBlock() {
+        return block;
+    }
+
+    /**
+     * @return position in the padrón, in chars, right after the last line of the block
+     */
+    public long getEndPosition() {
+        return endPosition;
+    }
+
+    /**
+     * @return rows of the block that were loaded
+     */
+    public int getRecords() {
+        return records;
+    }
+
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.loaders;
+
+import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteEntity;
+import io.github.project.openubl.searchpe.utils.DataHelper;
+import io.github.project.openubl.searchpe.utils.PadronParser;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Staged import: the calling thread reads blocks of lines, parser workers turn each block into a batch of
+ * contribuyentes and writer workers load those batches, each writer using its own {@link ContribuyenteLoader}.
+ * Stages are connected by bounded queues, so a slow stage blocks the previous one instead of buffering
+ * the whole padrón in memory.
+ * <p>
+ * Each batch is committed together with an {@link ImportCheckpoint} of its block. Blocks are cut the same
+ * way on every run, so an interrupted import is resumed by skipping the blocks already committed.
+ */
+public class ImportPipeline {
+
+    private static final Logger LOGGER = Logger.getLogger(ImportPipeline.class);
+
+    private static final int BLOCK_SIZE = 1024 * 1024;
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    private static final Block END_OF_BLOCKS = new Block(-1, -1, new char[0], 0, 0);
+    private static final Batch END_OF_BATCHES = new Batch(-1, -1, Collections.emptyList());
+
+    private final Long versionId;
+    private final Supplier<ContribuyenteLoader> loaderSupplier;
+    private final Predicate<PadronParser.Row> filter;
+    private final IntConsumer progressListener;
+    private final Map<Long, Integer> completedBlocks;
+
+    private final int parserThreads;
+    private final int writerThreads;
+
+    private final BlockingQueue<Block> blocks;
+    private final BlockingQueue<Batch> batches;
+
+    private final AtomicInteger runningParsers = new AtomicInteger();
+    private final AtomicInteger records = new AtomicInteger();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private volatile boolean indexed = true;
+
+    private ExecutorService executor;
+
+    public ImportPipeline(
+            Long versionId,
+            Supplier<ContribuyenteLoader> loaderSupplier,
+            Predicate<PadronParser.Row> filter,
+            IntConsumer progressListener,
+            Map<Long, Integer> completedBlocks,
+            int parserThreads,
+            int writerThreads,
+            int queueSize
+    ) {
+        this.versionId = versionId;
+        this.loaderSupplier = loaderSupplier;
+        this.filter = filter;
+        this.progressListener = progressListener;
+        this.completedBlocks = completedBlocks;
+        this.parserThreads = Math.max(1, parserThreads);
+        this.writerThreads = Math.max(1, writerThreads);
+        this.blocks = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        this.batches = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+    }
+
+    /**
+     * Import all the lines of the reader, the first line is considered a header and skipped.
+     *
+     * @return number of records loaded, including the ones of blocks committed by a previous run
+     */
+    public int run(Reader reader) throws IOException {
+        if (!completedBlocks.isEmpty()) {
+            records.set(completedBlocks.values().stream().mapToInt(Integer::intValue).sum());
+            LOGGER.infof("Resuming import of version %s, skipping %s blocks with %s records", versionId, completedBlocks.size(), records.get());
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(parserThreads + writerThreads, r -> {
+            Thread thread = new Thread(r, "searchpe-import-" + versionId + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        runningParsers.set(parserThreads);
+        for (int i = 0; i < parserThreads; i++) {
+            executor.execute(() -> runStage(this::parse));
+        }
+        for (int i = 0; i < writerThreads; i++) {
+            executor.execute(() -> runStage(this::write));
+        }
+
+        try {
+            read(reader);
+            for (int i = 0; i < parserThreads; i++) {
+                offer(blocks, END_OF_BLOCKS);
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        }
+
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                LOGGER.debugf("Waiting for import workers of version %s", versionId);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        }
+
+        Throwable error = failure.get();
+        if (error != null) {
+            throw error instanceof IOException ? (IOException) error : new IOException(error);
+        }
+        return records.get();
+    }
+
+    /**
+     * @return true if every writer used a loader that already indexed the rows it wrote
+     */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    private void read(Reader reader) throws IOException, InterruptedException {
+        char[] carry = new char[0];
+        boolean header = true;
+
+        // Position in the reader of chars[0]
+        long position = 0;
+        long blockIndex = 0;
+
+        while (failure.get() == null) {
+            char[] chars = new char[BLOCK_SIZE + carry.length];
+            System.arraycopy(carry, 0, chars, 0, carry.length);
+
+            int length = carry.length;
+            int read;
+            while (length < chars.length && (read = reader.read(chars, length, chars.length - length)) >= 0) {
+                length += read;
+            }
+            boolean eof = length < chars.length;
+
+            int end = length;
+            if (!eof) {
+                while (end > 0 && chars[end - 1] != '\n') {
+                    end--;
+                }
+            }
+
+            int start = 0;
+            if (header && end > 0) {
+                while (start < end && chars[start] != '\n') {
+                    start++;
+                }
+                start = Math.min(start + 1, end);
+                header = false;
+            }
+
+            if (end > start) {
+                if (!completedBlocks.containsKey(blockIndex)) {
+                    offer(blocks, new Block(blockIndex, position + end, chars, start, end - start));
+                }
+                blockIndex++;
+            }
+
+            if (eof) {
+                return;
+            }
+            carry = Arrays.copyOfRange(chars, end, length);
+            position += end;
+        }
+    }
+
+    private void parse() throws IOException, InterruptedException {
+        PadronParser parser = new PadronParser();
+
+        try {
+            while (true) {
+                Block block = blocks.take();
+                if (block == END_OF_BLOCKS) {
+                    break;
+                }
+
+                // Batches match blocks, even empty ones, so every block gets its checkpoint
+                List<ContribuyenteEntity> contribuyentes = new ArrayList<>();
+                parser.reset(block.chars, block.offset, block.length);
+                while (parser.nextRow()) {
+                    PadronParser.Row row = parser.getRow();
+                    if (DataHelper.isValid(row) && filter.test(row)) {
+                        contribuyentes.add(DataHelper.buildContribuyenteEntity(versionId, row));
+                    }
+                }
+
+                offer(batches, new Batch(block.index, block.endPosition, contribuyentes));
+            }
+        } finally {
+            if (runningParsers.decrementAndGet() == 0 && failure.get() == null) {
+                for (int i = 0; i < writerThreads; i++) {
+                    offer(batches, END_OF_BATCHES);
+                }
+            }
+        }
+    }
+
+    private void write() throws IOException, InterruptedException {
+        try (ContribuyenteLoader loader = loaderSupplier.get()) {
+            while (true) {
+                Batch batch = batches.take();
+                if (batch == END_OF_BATCHES) {
+                    break;
+                }
+
+                for (ContribuyenteEntity contribuyente : batch.contribuyentes) {
+                    loader.load(contribuyente);
+                }
+                loader.commit(new ImportCheckpoint(versionId, batch.blockIndex, batch.endPosition, batch.contribuyentes.size()));
+
+                reportProgress(batch.contribuyentes.size());
+            }
+
+            if (!loader.isIndexing()) {
+                indexed = false;
+            }
+        }
+    }
+
+    private synchronized void reportProgress(int committed) {
+        progressListener.accept(records.addAndGet(committed));
+    }
+
+    private <T> void offer(BlockingQueue<T> queue, T element) throws InterruptedException {
+        while (!queue.offer(element, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (failure.get() != null) {
+                throw new CancellationException("Import of version " + versionId + " failed");
+            }
+        }
+    }
+
+    private void runStage(Stage stage) {
+        try {
+            stage.run();
+        } catch (CancellationException e) {
+            LOGGER.debug(e.getMessage());
+        } catch (InterruptedException e) {
+            if (failure.get() == null) {
+                fail(e);
+            }
+        } catch (Throwable e) {
+            fail(e);
+        }
+    }
+
+    private void fail(Throwable e) {
+        if (failure.compareAndSet(null, e)) {
+            LOGGER.errorf(e, "Import of version %s failed, stopping workers", versionId);
+            executor.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Stage {
+        void run() throws IOException, InterruptedException;
+    }
+
+    private static class Block {
+        private final long index;
+        private final long endPosition;
+        private final char[] chars;
+        private final int offset;
+        private final int length;
+
+        private Block(long index, long endPosition, char[] chars, int offset, int length) {
+            this.index = index;
+            this.endPosition = endPosition;
+            this.chars = chars;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static class Batch {
+        private final long blockIndex;
+        private final long endPosition;
+        private final List<ContribuyenteEntity> contribuyentes;
+
+        private Batch(long blockIndex, long endPosition, List<ContribuyenteEntity> contribuyentes) {
+            this.blockIndex = blockIndex;
+            this.endPosition = endPosition;
+            this.contribuyentes = contribuyentes;
+        }
+    }
+
+}
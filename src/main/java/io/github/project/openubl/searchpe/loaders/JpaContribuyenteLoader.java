@@ -0,0 +1,137 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.loaders;
+
+import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteEntity;
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.jboss.logging.Logger;
+
+import javax.persistence.EntityManager;
+import javax.transaction.*;
+import java.io.IOException;
+
+/**
+ * Persists rows through Hibernate. When automatic indexing is disabled rows are inserted using a
+ * {@link StatelessSession}, which Hibernate Search does not listen to, so they have to be indexed afterwards.
+ */
+public class JpaContribuyenteLoader implements ContribuyenteLoader {
+
+    private static final Logger LOGGER = Logger.getLogger(JpaContribuyenteLoader.class);
+
+    private static final String CHECKPOINT_SQL = "INSERT INTO import_checkpoint (version_id, block, end_position, records) VALUES (?1, ?2, ?3, ?4)";
+
+    private final UserTransaction tx;
+    private final EntityManager entityManager;
+    private final boolean automaticIndexing;
+
+    private boolean active;
+    private StatelessSession statelessSession;
+
+    public JpaContribuyenteLoader(UserTransaction tx, EntityManager entityManager, boolean automaticIndexing) {
+        this.tx = tx;
+        this.entityManager = entityManager;
+        this.automaticIndexing = automaticIndexing;
+    }
+
+    @Override
+    public void load(ContribuyenteEntity contribuyente) throws IOException {
+        begin();
+
+        if (automaticIndexing) {
+            entityManager.persist(contribuyente);
+        } else {
+            if (statelessSession == null) {
+                statelessSession = entityManager.unwrap(Session.class).getSessionFactory().openStatelessSession();
+            }
+            statelessSession.insert(contribuyente);
+        }
+    }
+
+    @Override
+    public void commit(ImportCheckpoint checkpoint) throws IOException {
+        if (!active && checkpoint == null) {
+            return;
+        }
+
+        try {
+            begin();
+            if (automaticIndexing) {
+                entityManager.flush();
+                entityManager.clear();
+            } else {
+                closeStatelessSession();
+            }
+            if (checkpoint != null) {
+                entityManager.createNativeQuery(CHECKPOINT_SQL)
+                        .setParameter(1, checkpoint.getVersionId())
+                        .setParameter(2, checkpoint.getBlock())
+                        .setParameter(3, checkpoint.getEndPosition())
+                        .setParameter(4, checkpoint.getRecords())
+                        .executeUpdate();
+            }
+            tx.commit();
+            active = false;
+        } catch (HeuristicRollbackException | SystemException | RollbackException | HeuristicMixedException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public boolean isIndexing() {
+        return automaticIndexing;
+    }
+
+    @Override
+    public void close() {
+        closeStatelessSession();
+        if (!active) {
+            return;
+        }
+
+        try {
+            if (tx.getStatus() != Status.STATUS_NO_TRANSACTION) {
+                tx.rollback();
+            }
+        } catch (SystemException e) {
+            LOGGER.error(e);
+        } finally {
+            active = false;
+        }
+    }
+
+    private void begin() throws IOException {
+        if (active) {
+            return;
+        }
+
+        try {
+            tx.begin();
+        } catch (NotSupportedException | SystemException e) {
+            throw new IOException(e);
+        }
+        active = true;
+    }
+
+    private void closeStatelessSession() {
+        if (statelessSession != null) {
+            statelessSession.close();
+            statelessSession = null;
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.loaders;
+
+import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteEntity;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decorates a loader recording the rows committed and the latency of each commit.
+ */
+public class MeteredContribuyenteLoader implements ContribuyenteLoader {
+
+    private final ContribuyenteLoader delegate;
+    private final Timer commitTimer;
+    private final Counter committedRows;
+
+    private int pendingRows;
+
+    public MeteredContribuyenteLoader(ContribuyenteLoader delegate, Timer commitTimer, Counter committedRows) {
+        this.delegate = delegate;
+        this.commitTimer = commitTimer;
+        this.committedRows = committedRows;
+    }
+
+    @Override
+    public void load(ContribuyenteEntity contribuyente) throws IOException {
+        delegate.load(contribuyente);
+        pendingRows++;
+    }
+
+    @Override
+    public void commit(ImportCheckpoint checkpoint) throws IOException {
+        long start = System.nanoTime();
+        delegate.commit(checkpoint);
+        commitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        committedRows.increment(pendingRows);
+        pendingRows = 0;
+    }
+
+    @Override
+    public boolean isIndexing() {
+        return delegate.isIndexing();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.managers;
+
+import io.github.project.openubl.searchpe.models.jpa.VersionRepository;
+import io.github.project.openubl.searchpe.models.jpa.entity.Status;
+import io.github.project.openubl.searchpe.models.jpa.entity.VersionEntity;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.Optional;
+
+/**
+ * Keeps the active version in memory so requests do not need to query it. It is reloaded lazily
+ * after being invalidated, which happens whenever a version of this node changes and, for changes
+ * done by other nodes, when PostgreSQL notifies them.
+ */
+@ApplicationScoped
+public class ActiveVersionManager {
+
+    @Inject
+    VersionRepository versionRepository;
+
+    /**
+     * Null while not loaded
+     */
+    private volatile Optional<VersionEntity> activeVersion;
+
+    /**
+     * Incremented on each invalidation, so a load racing with an invalidation is not kept
+     */
+    private volatile long generation;
+
+    public Optional<VersionEntity> getActiveVersion() {
+        Optional<VersionEntity> result = activeVersion;
+        if (result == null) {
+            long loadGeneration;
+            synchronized (this) {
+                loadGeneration = generation;
+            }
+
+            result = versionRepository.findActive();
+
+            synchronized (this) {
+                if (loadGeneration == generation) {
+                    activeVersion = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return a number that changes whenever the active version is invalidated, on this node or by a notification
+     * of another one, so state derived from the active version can be kept until it changes
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    public synchronized void invalidate() {
+        generation++;
+        activeVersion = null;
+    }
+
+    /**
+     * Invalidate only if the change can affect which version is active.
+     */
+    public void invalidate(VersionEntity version) {
+        Optional<VersionEntity> current = activeVersion;
+        boolean isActive = current != null && current.isPresent() && current.get().id.equals(version.id);
+        if (version.status == Status.COMPLETED || isActive || current == null) {
+            invalidate();
+        }
+    }
+
+}
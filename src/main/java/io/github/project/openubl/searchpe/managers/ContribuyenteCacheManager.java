@@ -0,0 +1,150 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.managers;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteEntity;
+import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteId;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.smallrye.mutiny.Uni;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of RUC lookups keyed by (versionId, ruc). Unknown RUCs are cached as well.
+ * Entries of a version are useless once another version becomes active, so the whole cache
+ * is invalidated the first time a lookup is done for a different version.
+ */
+@ApplicationScoped
+public class ContribuyenteCacheManager {
+
+    private static final Logger LOGGER = Logger.getLogger(ContribuyenteCacheManager.class);
+
+    @ConfigProperty(name = "searchpe.cache.contribuyentes.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "searchpe.cache.contribuyentes.maximum-size", defaultValue = "100000")
+    Long maximumSize;
+
+    @ConfigProperty(name = "searchpe.cache.contribuyentes.expire-after-write", defaultValue = "1H")
+    Duration expireAfterWrite;
+
+    @Inject
+    MeterRegistry registry;
+
+    private Cache<ContribuyenteId, Optional<ContribuyenteEntity>> cache;
+    private volatile Long versionId;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "contribuyentes");
+    }
+
+    public Optional<ContribuyenteEntity> get(ContribuyenteId id, Function<ContribuyenteId, Optional<ContribuyenteEntity>> loader) {
+        if (!enabled) {
+            return loader.apply(id);
+        }
+
+        checkVersion(id.versionId);
+        return cache.get(id, loader);
+    }
+
+    /**
+     * Same as {@link #get(ContribuyenteId, Function)} for a loader that does not block, the result of
+     * the loader is cached once it arrives. Concurrent misses of the same id may load it more than once.
+     */
+    public Uni<Optional<ContribuyenteEntity>> getAsync(ContribuyenteId id, Function<ContribuyenteId, Uni<Optional<ContribuyenteEntity>>> loader) {
+        if (!enabled) {
+            return loader.apply(id);
+        }
+
+        checkVersion(id.versionId);
+        Optional<ContribuyenteEntity> cached = cache.getIfPresent(id);
+        if (cached != null) {
+            return Uni.createFrom().item(cached);
+        }
+        return loader.apply(id).onItem().invoke(result -> cache.put(id, result));
+    }
+
+    /**
+     * Resolve several ids of the same version, the ids not cached are loaded together with a single call to the loader.
+     *
+     * @param loader receives the ids not cached and returns the ones found
+     */
+    public Map<ContribuyenteId, Optional<ContribuyenteEntity>> getAll(Long versionId, Collection<ContribuyenteId> ids, Function<Collection<ContribuyenteId>, Map<ContribuyenteId, ContribuyenteEntity>> loader) {
+        Function<Iterable<? extends ContribuyenteId>, Map<ContribuyenteId, Optional<ContribuyenteEntity>>> bulkLoader = keys -> {
+            List<ContribuyenteId> missing = new ArrayList<>();
+            keys.forEach(missing::add);
+
+            Map<ContribuyenteId, ContribuyenteEntity> found = loader.apply(missing);
+
+            Map<ContribuyenteId, Optional<ContribuyenteEntity>> result = new HashMap<>();
+            missing.forEach(id -> result.put(id, Optional.ofNullable(found.get(id))));
+            return result;
+        };
+
+        if (!enabled) {
+            return bulkLoader.apply(ids);
+        }
+
+        checkVersion(versionId);
+        return cache.getAll(ids, bulkLoader);
+    }
+
+    private void checkVersion(Long currentVersionId) {
+        if (!currentVersionId.equals(versionId)) {
+            synchronized (this) {
+                if (!currentVersionId.equals(versionId)) {
+                    invalidateAll();
+                    versionId = currentVersionId;
+                }
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        LOGGER.infof("Invalidating contribuyentes cache of version %s, %s", versionId, getStats());
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return hit/miss counters since the application started
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public long getSize() {
+        return cache.estimatedSize();
+    }
+
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.managers;
+
+import io.agroal.api.AgroalDataSource;
+import io.github.project.openubl.searchpe.models.jpa.entity.Dictionary;
+import io.github.project.openubl.searchpe.models.jpa.entity.EstadoContribuyente;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * Streams every contribuyente of a version straight from PostgreSQL. Rows are read through a server side
+ * cursor of 'fetch-size' rows and written as they come, so memory does not depend on the size of the version.
+ */
+@ApplicationScoped
+public class ContribuyenteExportManager {
+
+    private static final Logger LOGGER = Logger.getLogger(ContribuyenteExportManager.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    static final String[] COLUMNS = {
+            "ruc", "razon_social", "estado_contribuyente", "condicion_domicilio", "ubigeo", "tipo_via", "nombre_via",
+            "codigo_zona", "tipo_zona", "numero", "interior", "lote", "departamento", "manzana", "kilometro"
+    };
+
+    /**
+     * Dictionary of each of {@link #COLUMNS} stored as a code, null for columns stored as text
+     */
+    static final Dictionary[] DICTIONARIES = {
+            null, null, Dictionary.ESTADO_CONTRIBUYENTE, Dictionary.CONDICION_DOMICILIO, Dictionary.UBIGEO, Dictionary.TIPO_VIA, null,
+            null, Dictionary.TIPO_ZONA, null, null, null, null, null, null
+    };
+
+    /**
+     * Names of {@link #COLUMNS} in the JSON representation of a contribuyente
+     */
+    static final String[] FIELDS = {
+            "ruc", "razonSocial", "estadoContribuyente", "condicionDomicilio", "ubigeo", "tipoVia", "nombreVia",
+            "codigoZona", "tipoZona", "numero", "interior", "lote", "departamento", "manzana", "kilometro"
+    };
+
+    public enum Format {
+        NDJSON("application/x-ndjson"),
+        CSV("text/csv");
+
+        private final String mediaType;
+
+        Format(String mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        public String getMediaType() {
+            return mediaType;
+        }
+    }
+
+    @ConfigProperty(name = "searchpe.export.fetch-size", defaultValue = "10000")
+    Integer fetchSize;
+
+    @ConfigProperty(name = "searchpe.export.flush-rows", defaultValue = "10000")
+    Integer flushRows;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Inject
+    DictionaryManager dictionaryManager;
+
+    /**
+     * @param estados       if not empty, only contribuyentes in one of these estados are written
+     * @param ubigeoPrefix  if not null, only contribuyentes whose ubigeo starts with it are written, e.g. '15' for Lima
+     * @return number of rows written
+     */
+    public long export(Long versionId, Format format, List<EstadoContribuyente> estados, String ubigeoPrefix, OutputStream outputStream) throws IOException {
+        LOGGER.infof("Start exporting contribuyentes of version %s as %s", versionId, format);
+        long startTime = Calendar.getInstance().getTimeInMillis();
+
+        StringBuilder sql = new StringBuilder("SELECT ")
+                .append(String.join(", ", COLUMNS))
+                .append(" FROM contribuyente WHERE version_id = ?");
+
+        // Dictionary columns are filtered by the codes of the values matching the filter
+        Short[] estadoCodes = null;
+        if (!estados.isEmpty()) {
+            estadoCodes = dictionaryManager.findCodes(Dictionary.ESTADO_CONTRIBUYENTE, value -> EstadoContribuyente.fromString(value)
+                    .filter(estados::contains)
+                    .isPresent()
+            );
+            sql.append(" AND estado_contribuyente = ANY (?)");
+        }
+        Short[] ubigeoCodes = null;
+        if (ubigeoPrefix != null) {
+            ubigeoCodes = dictionaryManager.findCodes(Dictionary.UBIGEO, value -> value.startsWith(ubigeoPrefix));
+            sql.append(" AND ubigeo = ANY (?)");
+        }
+
+        long count = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+
+        // PostgreSQL only uses a cursor, instead of reading the whole result, outside of autocommit
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            connection.setReadOnly(true);
+
+            try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+                statement.setFetchSize(fetchSize);
+
+                int parameter = 1;
+                statement.setLong(parameter++, versionId);
+                if (estadoCodes != null) {
+                    statement.setArray(parameter++, connection.createArrayOf("smallint", estadoCodes));
+                }
+                if (ubigeoCodes != null) {
+                    statement.setArray(parameter, connection.createArrayOf("smallint", ubigeoCodes));
+                }
+
+                if (format == Format.CSV) {
+                    writeCsvRow(writer, COLUMNS);
+                }
+
+                String[] values = new String[COLUMNS.length];
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        readRow(resultSet, values);
+
+                        if (format == Format.CSV) {
+                            writeCsvRow(writer, values);
+                        } else {
+                            writeJsonRow(writer, values);
+                        }
+
+                        if (++count % flushRows == 0) {
+                            writer.flush();
+                        }
+                    }
+                }
+            } finally {
+                connection.rollback();
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+        writer.flush();
+
+        long endTime = Calendar.getInstance().getTimeInMillis();
+        LOGGER.infof("Exported %s contribuyentes of version %s in %s milliseconds.", count, versionId, (endTime - startTime));
+        return count;
+    }
+
+    static void writeJsonRow(Writer writer, String[] values) throws IOException {
+        writer.write('{');
+        boolean first = true;
+        for (int i = 0; i < values.length; i++) {
+            // Same as the REST representation, null fields are omitted
+            if (values[i] == null) {
+                continue;
+            }
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+
+            writer.write('"');
+            writer.write(FIELDS[i]);
+            writer.write("\":");
+            writeJsonString(writer, values[i]);
+        }
+        writer.write("}\n");
+    }
+
+    static void writeJsonString(Writer writer, String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+
+    /**
+     * RFC 4180 row, values are quoted only when needed and null values are written as empty
+     */
+    static void writeCsvRow(Writer writer, String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+
+            String value = values[i];
+            if (value == null) {
+                continue;
+            }
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * Read the {@link #COLUMNS} of the current row, decoding the dictionary columns.
+     */
+    void readRow(ResultSet resultSet, String[] values) throws SQLException {
+        for (int i = 0; i < values.length; i++) {
+            if (DICTIONARIES[i] != null) {
+                // 0 for null, which decodes to null
+                values[i] = dictionaryManager.decode(DICTIONARIES[i], resultSet.getShort(i + 1));
+            } else {
+                values[i] = resultSet.getString(i + 1);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.managers;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.github.project.openubl.searchpe.models.RucStorage;
+import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteEntity;
+import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteId;
+import io.github.project.openubl.searchpe.utils.DataHelper;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.RowSet;
+import io.vertx.mutiny.sqlclient.Tuple;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Non blocking access to the contribuyentes: rows are read with the reactive PostgreSQL client and searches
+ * are sent with the asynchronous Elasticsearch client, so no thread nor JDBC connection waits for them.
+ * Dictionary columns are decoded from the in-memory dictionaries, rows with a code that is not cached yet are
+ * decoded on a worker thread as it reads the DICTIONARY table with JDBC.
+ */
+@ApplicationScoped
+public class ContribuyenteReactiveManager {
+
+    private static final String SELECT_SQL = "SELECT " + String.join(", ", ContribuyenteExportManager.COLUMNS) + " FROM contribuyente";
+
+    @ConfigProperty(name = "searchpe.storage.ruc", defaultValue = "VARCHAR")
+    RucStorage rucStorage;
+
+    @Inject
+    PgPool client;
+
+    @Inject
+    DictionaryManager dictionaryManager;
+
+    @Inject
+    ElasticsearchManager elasticsearchManager;
+
+    public Uni<Optional<ContribuyenteEntity>> findById(ContribuyenteId id) {
+        return client.preparedQuery(SELECT_SQL + " WHERE version_id = $1 AND ruc = $2")
+                .execute(Tuple.of(id.versionId.shortValue(), toRucParameter(id.ruc)))
+                .onItem().transformToUni(this::toDecodingThread)
+                .onItem().transform(rows -> {
+                    for (Row row : rows) {
+                        return buildContribuyenteEntity(id.versionId, row);
+                    }
+                    return Optional.empty();
+                });
+    }
+
+    /**
+     * @return contribuyentes found, in no particular order
+     */
+    public Uni<List<ContribuyenteEntity>> findByRucs(Long versionId, List<String> rucs) {
+        Object[] rucsParameter = rucStorage == RucStorage.BIGINT
+                ? rucs.stream().map(Long::valueOf).toArray(Long[]::new)
+                : rucs.toArray(new String[0]);
+
+        return client.preparedQuery(SELECT_SQL + " WHERE version_id = $1 AND ruc = ANY ($2)")
+                .execute(Tuple.of(versionId.shortValue(), rucsParameter))
+                .onItem().transformToUni(this::toDecodingThread)
+                .onItem().transform(rows -> {
+                    List<ContribuyenteEntity> result = new ArrayList<>();
+                    for (Row row : rows) {
+                        buildContribuyenteEntity(versionId, row).ifPresent(result::add);
+                    }
+                    return result;
+                });
+    }
+
+    /**
+     * Send a search request to the read index of {@link ContribuyenteEntity}.
+     *
+     * @param body search request, see the Elasticsearch search API
+     * @return search response
+     */
+    public Uni<JsonObject> search(JsonObject body) {
+        return Uni.createFrom()
+                .completionStage(() -> elasticsearchManager.searchAsync(elasticsearchManager.getReadIndexName(), body.toString()))
+                .onItem().transform(response -> JsonParser.parseString(response).getAsJsonObject());
+    }
+
+    private Object toRucParameter(String ruc) {
+        // The client does not convert parameters to the type of the column
+        return rucStorage == RucStorage.BIGINT ? Long.valueOf(ruc) : ruc;
+    }
+
+    /**
+     * Stay on the event loop unless a dictionary has to be reloaded to decode the rows.
+     */
+    private Uni<RowSet<Row>> toDecodingThread(RowSet<Row> rows) {
+        Uni<RowSet<Row>> result = Uni.createFrom().item(rows);
+        for (Row row : rows) {
+            for (int i = 0; i < ContribuyenteExportManager.DICTIONARIES.length; i++) {
+                Object value = row.getValue(i);
+                if (ContribuyenteExportManager.DICTIONARIES[i] != null && value != null && !dictionaryManager.isCached(ContribuyenteExportManager.DICTIONARIES[i], (Short) value)) {
+                    return result.emitOn(Infrastructure.getDefaultWorkerPool());
+                }
+            }
+        }
+        return result;
+    }
+
+    private Optional<ContribuyenteEntity> buildContribuyenteEntity(Long versionId, Row row) {
+        String[] columns = new String[ContribuyenteExportManager.COLUMNS.length];
+        for (int i = 0; i < columns.length; i++) {
+            Object value = row.getValue(i);
+            if (ContribuyenteExportManager.DICTIONARIES[i] != null) {
+                columns[i] = value != null ? dictionaryManager.decode(ContribuyenteExportManager.DICTIONARIES[i], (Short) value) : null;
+            } else {
+                // The RUC is a Long with the BIGINT storage
+                columns[i] = value != null ? value.toString() : null;
+            }
+        }
+
+        return DataHelper.buildContribuyenteEntity(versionId, columns).map(contribuyente -> {
+            // Filled by the database for entities that are loaded from it
+            contribuyente.ruc = contribuyente.id.ruc;
+            return contribuyente;
+        });
+    }
+
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.managers;
+
+import io.agroal.api.AgroalDataSource;
+import io.github.project.openubl.searchpe.models.jpa.entity.Dictionary;
+import io.quarkus.runtime.StartupEvent;
+import org.jboss.logging.Logger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.transaction.SystemException;
+import javax.transaction.Transaction;
+import javax.transaction.TransactionManager;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * In-memory copy of the DICTIONARY table. Codes are created the first time a value is encoded,
+ * e.g. while importing a version, and never change afterwards, so they are cached for good.
+ */
+@ApplicationScoped
+public class DictionaryManager {
+
+    private static final Logger LOGGER = Logger.getLogger(DictionaryManager.class);
+
+    static final String INSERT_SQL = "INSERT INTO dictionary (name, code, value) " +
+            "SELECT ?, COALESCE(MAX(code), 0) + 1, ? FROM dictionary WHERE name = ? " +
+            "ON CONFLICT DO NOTHING";
+
+    // Another node may take the next code at the same time
+    private static final int INSERT_ATTEMPTS = 5;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Inject
+    TransactionManager transactionManager;
+
+    private final Map<Dictionary, Entries> dictionaries = new EnumMap<>(Dictionary.class);
+
+    public DictionaryManager() {
+        for (Dictionary dictionary : Dictionary.values()) {
+            dictionaries.put(dictionary, new Entries());
+        }
+    }
+
+    /**
+     * Load the dictionaries before the first request, so non blocking callers find them cached.
+     */
+    void onStart(@Observes StartupEvent ev) {
+        for (Dictionary dictionary : Dictionary.values()) {
+            try {
+                getEntries(dictionary);
+            } catch (IllegalStateException e) {
+                LOGGER.warnf(e, "Could not preload dictionary %s, it will be loaded on first use", dictionary.getColumnName());
+            }
+        }
+    }
+
+    /**
+     * @return true if the code can be decoded without reading the DICTIONARY table, never blocks
+     */
+    public boolean isCached(Dictionary dictionary, short code) {
+        if (code == 0) {
+            return true;
+        }
+        Entries entries = dictionaries.get(dictionary);
+        String[] values = entries.values;
+        return entries.loaded && code < values.length && values[code] != null;
+    }
+
+    /**
+     * @return code of the value, created if the value is new
+     */
+    public short encode(Dictionary dictionary, String value) {
+        Entries entries = getEntries(dictionary);
+        Short code = entries.codes.get(value);
+        return code != null ? code : create(dictionary, entries, value);
+    }
+
+    /**
+     * @return value of the code, null for code 0
+     */
+    public String decode(Dictionary dictionary, short code) {
+        if (code == 0) {
+            return null;
+        }
+
+        Entries entries = getEntries(dictionary);
+        String[] values = entries.values;
+        if (code < values.length && values[code] != null) {
+            return values[code];
+        }
+
+        // Created by another node
+        synchronized (entries) {
+            load(dictionary, entries);
+            if (code < entries.values.length && entries.values[code] != null) {
+                return entries.values[code];
+            }
+        }
+        throw new IllegalStateException("Code " + code + " not found in dictionary " + dictionary.getColumnName());
+    }
+
+    /**
+     * @return codes of the values accepted by the predicate, e.g. to filter a dictionary column with '= ANY (?)'
+     */
+    public Short[] findCodes(Dictionary dictionary, Predicate<String> predicate) {
+        Entries entries = getEntries(dictionary);
+        synchronized (entries) {
+            load(dictionary, entries);
+        }
+
+        List<Short> result = new ArrayList<>();
+        String[] values = entries.values;
+        for (short code = 1; code < values.length; code++) {
+            if (values[code] != null && predicate.test(values[code])) {
+                result.add(code);
+            }
+        }
+        return result.toArray(new Short[0]);
+    }
+
+    private Entries getEntries(Dictionary dictionary) {
+        Entries entries = dictionaries.get(dictionary);
+        if (!entries.loaded) {
+            synchronized (entries) {
+                if (!entries.loaded) {
+                    load(dictionary, entries);
+                }
+            }
+        }
+        return entries;
+    }
+
+    private short create(Dictionary dictionary, Entries entries, String value) {
+        synchronized (entries) {
+            Short code = entries.codes.get(value);
+            if (code != null) {
+                return code;
+            }
+
+            // Codes are committed on their own, whatever happens to the transaction encoding the value
+            Transaction transaction = suspend();
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(true);
+
+                for (int attempt = 0; attempt < INSERT_ATTEMPTS; attempt++) {
+                    try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
+                        statement.setString(1, dictionary.getColumnName());
+                        statement.setString(2, value);
+                        statement.setString(3, dictionary.getColumnName());
+                        statement.executeUpdate();
+                    }
+
+                    code = findCode(connection, dictionary, value);
+                    if (code != null) {
+                        LOGGER.debugf("Value '%s' added to dictionary %s with code %s", value, dictionary.getColumnName(), code);
+                        load(dictionary, entries);
+                        return code;
+                    }
+                }
+            } catch (SQLException e) {
+                // Including a dictionary already using every SMALLINT
+                throw new IllegalStateException("Could not add '" + value + "' to dictionary " + dictionary.getColumnName(), e);
+            } finally {
+                resume(transaction);
+            }
+            throw new IllegalStateException("Could not add '" + value + "' to dictionary " + dictionary.getColumnName() + " after " + INSERT_ATTEMPTS + " attempts");
+        }
+    }
+
+    private Short findCode(Connection connection, Dictionary dictionary, String value) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT code FROM dictionary WHERE name = ? AND value = ?")) {
+            statement.setString(1, dictionary.getColumnName());
+            statement.setString(2, value);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getShort(1) : null;
+            }
+        }
+    }
+
+    /**
+     * Read the whole dictionary, callers hold the lock of the entries.
+     */
+    private void load(Dictionary dictionary, Entries entries) {
+        Map<Short, String> rows = new HashMap<>();
+        short maxCode = 0;
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT code, value FROM dictionary WHERE name = ?")) {
+            statement.setString(1, dictionary.getColumnName());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    short code = resultSet.getShort(1);
+                    rows.put(code, resultSet.getString(2));
+                    maxCode = (short) Math.max(maxCode, code);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not read dictionary " + dictionary.getColumnName(), e);
+        }
+
+        String[] values = new String[maxCode + 1];
+        rows.forEach((code, value) -> {
+            values[code] = value;
+            entries.codes.put(value, code);
+        });
+        entries.values = values;
+        entries.loaded = true;
+    }
+
+    private Transaction suspend() {
+        try {
+            return transactionManager.getTransaction() != null ? transactionManager.suspend() : null;
+        } catch (SystemException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void resume(Transaction transaction) {
+        if (transaction == null) {
+            return;
+        }
+        try {
+            transactionManager.resume(transaction);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Entries {
+        private final Map<String, Short> codes = new ConcurrentHashMap<>();
+        private volatile String[] values = new String[0];
+        private volatile boolean loaded;
+    }
+
+}
@@ -0,0 +1,390 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.managers;
+
+import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteEntity;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.hibernate.search.backend.elasticsearch.ElasticsearchBackend;
+import org.hibernate.search.backend.elasticsearch.index.ElasticsearchIndexManager;
+import org.hibernate.search.backend.elasticsearch.index.descriptor.ElasticsearchIndexDescriptor;
+import org.hibernate.search.mapper.orm.mapping.SearchMapping;
+import org.jboss.logging.Logger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Administrative operations on the Elasticsearch index of {@link ContribuyenteEntity}
+ * that Hibernate Search does not expose.
+ */
+@ApplicationScoped
+public class ElasticsearchManager {
+
+    private static final Logger LOGGER = Logger.getLogger(ElasticsearchManager.class);
+
+    static final String REFRESH_INTERVAL = "index.refresh_interval";
+    static final String NUMBER_OF_REPLICAS = "index.number_of_replicas";
+
+    static final long TASK_POLL_INTERVAL_MILLIS = 1000;
+
+    /**
+     * Moves a document to another version: its identifier is 'versionId/ruc' and its versionId field changes
+     */
+    static final String CHANGE_VERSION_SCRIPT = "" +
+            "String ruc = ctx._id.substring(ctx._id.indexOf('/') + 1);" +
+            "ctx._id = params.versionId + '/' + ruc;" +
+            "ctx._source.embeddedId.versionId = params.versionId;";
+
+    @Inject
+    SearchMapping searchMapping;
+
+    public String getWriteIndexName() {
+        return getIndexDescriptor().writeName();
+    }
+
+    public String getReadIndexName() {
+        return getIndexDescriptor().readName();
+    }
+
+    /**
+     * @return name of the physical index holding the documents of a single version
+     */
+    public String getVersionIndexName(Long versionId) {
+        return getVersionIndexPrefix() + versionId;
+    }
+
+    public String getVersionIndexPrefix() {
+        return getIndexDescriptor().hibernateSearchName() + "-v";
+    }
+
+    /**
+     * @return name of the physical index created by Hibernate Search, shared by all versions not having their own index.
+     * It is the index of an alias if they do not point to a version index, otherwise the latest index named by
+     * Hibernate Search, e.g. after a rollover. Empty if there is none.
+     */
+    public Optional<String> getDefaultIndexName() throws IOException {
+        String versionIndexPrefix = getVersionIndexPrefix();
+        for (String alias : new String[]{getWriteIndexName(), getReadIndexName()}) {
+            Optional<String> index = getAliasIndexes(alias).stream()
+                    .filter(name -> !name.startsWith(versionIndexPrefix))
+                    .max(Comparator.naturalOrder());
+            if (index.isPresent()) {
+                return index;
+            }
+        }
+
+        Request request = new Request("GET", "/" + getIndexDescriptor().hibernateSearchName() + "-*/_alias");
+        return performRequest(request).keySet().stream()
+                .filter(name -> !name.startsWith(versionIndexPrefix))
+                .max(Comparator.naturalOrder());
+    }
+
+    public boolean indexExists(String indexName) throws IOException {
+        Response response = getClient().performRequest(new Request("HEAD", "/" + indexName));
+        return response.getStatusLine().getStatusCode() == 200;
+    }
+
+    /**
+     * Create an index with the same analysis, shards and mappings as the index referenced by 'sourceName'.
+     */
+    public void createIndexLike(String sourceName, String indexName) throws IOException {
+        JsonObject source = performRequest(new Request("GET", "/" + sourceName));
+        JsonObject sourceIndex = source.getJsonObject(source.keySet().iterator().next());
+        JsonObject sourceSettings = sourceIndex.getJsonObject("settings").getJsonObject("index");
+
+        JsonObjectBuilder indexSettings = Json.createObjectBuilder();
+        for (String name : new String[]{"number_of_shards", "number_of_replicas", "refresh_interval", "max_result_window", "analysis"}) {
+            if (sourceSettings.containsKey(name)) {
+                indexSettings.add(name, sourceSettings.get(name));
+            }
+        }
+
+        JsonObject body = Json.createObjectBuilder()
+                .add("settings", Json.createObjectBuilder().add("index", indexSettings))
+                // The '_meta' describes the documents of the source index, not of the new one
+                .add("mappings", Json.createObjectBuilder(sourceIndex.getJsonObject("mappings")).remove("_meta"))
+                .build();
+
+        Request request = new Request("PUT", "/" + indexName);
+        request.setJsonEntity(body.toString());
+        getClient().performRequest(request);
+        LOGGER.infof("Index %s created from %s", indexName, sourceName);
+    }
+
+    /**
+     * @return value of the key in the '_meta' of the mappings, the lowest one if 'indexName' is an alias of several
+     * indexes, 0 if any of them does not have it
+     */
+    public int getMappingMeta(String indexName, String key) throws IOException {
+        JsonObject json = performRequest(new Request("GET", "/" + indexName + "/_mapping"));
+
+        int result = json.isEmpty() ? 0 : Integer.MAX_VALUE;
+        for (String index : json.keySet()) {
+            JsonObject mappings = json.getJsonObject(index).getJsonObject("mappings");
+            JsonObject meta = mappings != null ? mappings.getJsonObject("_meta") : null;
+            result = Math.min(result, meta != null && meta.containsKey(key) ? meta.getInt(key) : 0);
+        }
+        return result;
+    }
+
+    /**
+     * Replace the '_meta' of the mappings. Hibernate Search does not send a '_meta' when it updates the mappings, so it is kept.
+     */
+    public void putMappingMeta(String indexName, String key, int value) throws IOException {
+        JsonObject body = Json.createObjectBuilder()
+                .add("_meta", Json.createObjectBuilder().add(key, value))
+                .build();
+
+        Request request = new Request("PUT", "/" + indexName + "/_mapping");
+        request.setJsonEntity(body.toString());
+        getClient().performRequest(request);
+    }
+
+    public long count(String indexName) throws IOException {
+        return performRequest(new Request("GET", "/" + indexName + "/_count")).getJsonNumber("count").longValue();
+    }
+
+    public void deleteIndex(String indexName) throws IOException {
+        getClient().performRequest(new Request("DELETE", "/" + indexName));
+        LOGGER.infof("Index %s deleted", indexName);
+    }
+
+    /**
+     * @return physical indexes the alias points to, empty if the alias does not exist
+     */
+    public Set<String> getAliasIndexes(String alias) throws IOException {
+        Request request = new Request("GET", "/_alias/" + alias);
+        request.addParameter("ignore", "404");
+
+        Response response = getClient().performRequest(request);
+        if (response.getStatusLine().getStatusCode() == 404) {
+            return Collections.emptySet();
+        }
+
+        try (JsonReader reader = Json.createReader(new StringReader(EntityUtils.toString(response.getEntity())))) {
+            return new HashSet<>(reader.readObject().keySet());
+        }
+    }
+
+    /**
+     * Atomically point the alias to a single index, removing it from any other index.
+     */
+    public void moveAlias(String alias, String indexName, boolean writeIndex) throws IOException {
+        JsonArrayBuilder actions = Json.createArrayBuilder();
+        for (String currentIndex : getAliasIndexes(alias)) {
+            if (!currentIndex.equals(indexName)) {
+                actions.add(Json.createObjectBuilder().add("remove", Json.createObjectBuilder()
+                        .add("index", currentIndex)
+                        .add("alias", alias)
+                ));
+            }
+        }
+        actions.add(Json.createObjectBuilder().add("add", Json.createObjectBuilder()
+                .add("index", indexName)
+                .add("alias", alias)
+                .add("is_write_index", writeIndex)
+        ));
+
+        Request request = new Request("POST", "/_aliases");
+        request.setJsonEntity(Json.createObjectBuilder().add("actions", actions).build().toString());
+        getClient().performRequest(request);
+        LOGGER.infof("Alias %s moved to %s", alias, indexName);
+    }
+
+    /**
+     * Copy every document of 'sourceIndex' into 'destIndex' changing its version. Documents are copied
+     * by Elasticsearch itself, nothing is read from the database.
+     */
+    public void reindexVersion(String sourceIndex, String destIndex, Long versionId) throws IOException {
+        JsonObject body = Json.createObjectBuilder()
+                .add("source", Json.createObjectBuilder()
+                        .add("index", sourceIndex)
+                        .add("size", 5000)
+                )
+                .add("dest", Json.createObjectBuilder()
+                        .add("index", destIndex)
+                )
+                .add("script", Json.createObjectBuilder()
+                        .add("lang", "painless")
+                        .add("source", CHANGE_VERSION_SCRIPT)
+                        .add("params", Json.createObjectBuilder().add("versionId", versionId))
+                )
+                .build();
+
+        Request request = new Request("POST", "/_reindex");
+        request.addParameter("wait_for_completion", "false");
+        request.addParameter("slices", "auto");
+        request.setJsonEntity(body.toString());
+
+        // Reindexing millions of documents takes longer than any request timeout, so the task is polled
+        String taskId = performRequest(request).getString("task");
+        LOGGER.infof("Reindexing %s into %s, task %s", sourceIndex, destIndex, taskId);
+
+        JsonObject task = waitForTask(taskId);
+        if (task.containsKey("error")) {
+            throw new IOException("Reindex of " + sourceIndex + " failed: " + task.get("error"));
+        }
+        JsonObject response = task.getJsonObject("response");
+        if (response != null && !response.getJsonArray("failures").isEmpty()) {
+            throw new IOException("Reindex of " + sourceIndex + " failed: " + response.get("failures"));
+        }
+        LOGGER.infof("Reindex of %s into %s finished", sourceIndex, destIndex);
+    }
+
+    /**
+     * Run a search without blocking the calling thread, the stage completes on a thread of the Elasticsearch client.
+     *
+     * @return body of the response
+     */
+    public CompletionStage<String> searchAsync(String indexName, String body) {
+        Request request = new Request("POST", "/" + indexName + "/_search");
+        request.setJsonEntity(body);
+
+        CompletableFuture<String> result = new CompletableFuture<>();
+        getClient().performRequestAsync(request, new ResponseListener() {
+            @Override
+            public void onSuccess(Response response) {
+                try {
+                    result.complete(EntityUtils.toString(response.getEntity()));
+                } catch (IOException e) {
+                    result.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    JsonObject waitForTask(String taskId) throws IOException {
+        while (true) {
+            JsonObject task = performRequest(new Request("GET", "/_tasks/" + taskId));
+            if (task.getBoolean("completed", false)) {
+                return task;
+            }
+
+            try {
+                Thread.sleep(TASK_POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+    }
+
+    /**
+     * Disable refreshes and replicas so bulk writes are not slowed down by them.
+     *
+     * @return the settings before the change, to be used with {@link #restoreSettings(String, Map)}
+     */
+    public Map<String, String> prepareForBulkIndexing(String indexName) throws IOException {
+        Map<String, String> previousSettings = getSettings(indexName, REFRESH_INTERVAL, NUMBER_OF_REPLICAS);
+
+        Map<String, String> bulkSettings = new HashMap<>();
+        bulkSettings.put(REFRESH_INTERVAL, "-1");
+        bulkSettings.put(NUMBER_OF_REPLICAS, "0");
+        updateSettings(indexName, bulkSettings);
+
+        LOGGER.infof("Index %s prepared for bulk indexing, previous settings %s", indexName, previousSettings);
+        return previousSettings;
+    }
+
+    public void restoreSettings(String indexName, Map<String, String> settings) throws IOException {
+        updateSettings(indexName, settings);
+        refresh(indexName);
+        LOGGER.infof("Index %s settings restored to %s", indexName, settings);
+    }
+
+    public void refresh(String indexName) throws IOException {
+        getClient().performRequest(new Request("POST", "/" + indexName + "/_refresh"));
+    }
+
+    Map<String, String> getSettings(String indexName, String... names) throws IOException {
+        Request request = new Request("GET", "/" + indexName + "/_settings/" + String.join(",", names));
+        request.addParameter("flat_settings", "true");
+        request.addParameter("include_defaults", "true");
+
+        JsonObject json = performRequest(request);
+
+        Map<String, String> result = new HashMap<>();
+        for (String index : json.keySet()) {
+            JsonObject indexJson = json.getJsonObject(index);
+            for (String name : names) {
+                JsonObject settings = indexJson.getJsonObject("settings");
+                JsonObject defaults = indexJson.getJsonObject("defaults");
+                if (settings != null && settings.containsKey(name)) {
+                    result.put(name, settings.getString(name));
+                } else if (defaults != null && defaults.containsKey(name)) {
+                    result.put(name, defaults.getString(name));
+                }
+            }
+        }
+        return result;
+    }
+
+    void updateSettings(String indexName, Map<String, String> settings) throws IOException {
+        if (settings.isEmpty()) {
+            return;
+        }
+
+        JsonObjectBuilder body = Json.createObjectBuilder();
+        settings.forEach(body::add);
+
+        Request request = new Request("PUT", "/" + indexName + "/_settings");
+        request.setJsonEntity(body.build().toString());
+        getClient().performRequest(request);
+    }
+
+    JsonObject performRequest(Request request) throws IOException {
+        Response response = getClient().performRequest(request);
+        String body = EntityUtils.toString(response.getEntity());
+        try (JsonReader reader = Json.createReader(new StringReader(body))) {
+            return reader.readObject();
+        }
+    }
+
+    ElasticsearchIndexDescriptor getIndexDescriptor() {
+        return searchMapping.indexedEntity(ContribuyenteEntity.class)
+                .indexManager()
+                .unwrap(ElasticsearchIndexManager.class)
+                .descriptor();
+    }
+
+    RestClient getClient() {
+        return searchMapping.backend()
+                .unwrap(ElasticsearchBackend.class)
+                .client(RestClient.class);
+    }
+
+}
@@ -16,6 +16,8 @@
  */
 package io.github.project.openubl.searchpe.managers;
 
+import io.github.project.openubl.searchpe.models.DownloadedFile;
+import io.github.project.openubl.searchpe.utils.ChunkedDownloader;
 import io.github.project.openubl.searchpe.utils.FileHelper;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -25,9 +27,17 @@ import org.jboss.logging.Logger;
 import javax.enterprise.context.ApplicationScoped;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.UUID;
+import java.util.function.LongConsumer;
 
 @ApplicationScoped
 public class FileManager {
@@ -46,7 +56,38 @@ public class FileManager {
     @ConfigProperty(name = "searchpe.workspace.readTimeout", defaultValue = "100000")
     Integer readTimeout;
 
+    @ConfigProperty(name = "searchpe.download.threads", defaultValue = "4")
+    Integer downloadThreads;
+
+    @ConfigProperty(name = "searchpe.download.chunk-size", defaultValue = "8388608")
+    Long downloadChunkSize;
+
+    @ConfigProperty(name = "searchpe.download.retries", defaultValue = "5")
+    Integer downloadRetries;
+
     public File downloadFile() throws IOException {
+        return downloadFile(null, null).getFile();
+    }
+
+    /**
+     * Download the padrón unless the server confirms it did not change, the SHA-256 of the content
+     * is computed while downloading.
+     *
+     * @param etag         ETag of the previous download, sent as 'If-None-Match'
+     * @param lastModified Last-Modified of the previous download, sent as 'If-Modified-Since'
+     */
+    public DownloadedFile downloadFile(String etag, String lastModified) throws IOException {
+        return downloadFile(etag, lastModified, bytes -> {
+        });
+    }
+
+    /**
+     * Same as {@link #downloadFile(String, String)}. If the server supports byte ranges the file is downloaded
+     * in parallel ranges by a {@link ChunkedDownloader}, and a failed download is resumed by the next call.
+     *
+     * @param progressListener receives the number of bytes downloaded so far
+     */
+    public DownloadedFile downloadFile(String etag, String lastModified, LongConsumer progressListener) throws IOException {
         File workingDirectoryFile = new File(workingDirectory);
         Path workingDirectoryPath = workingDirectoryFile.toPath();
 
@@ -60,11 +101,86 @@ public class FileManager {
         File zipFile = workingDirectoryPath.resolve(zipFileName).toFile();
         URL zipFileURL = new URL(zipURL);
 
+        if (zipFileURL.getProtocol().startsWith("http")) {
+            HttpURLConnection headConnection = (HttpURLConnection) zipFileURL.openConnection();
+            headConnection.setRequestMethod("HEAD");
+            headConnection.setConnectTimeout(connectionTimeout);
+            headConnection.setReadTimeout(readTimeout);
+            if (etag != null) {
+                headConnection.setRequestProperty("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                headConnection.setRequestProperty("If-Modified-Since", lastModified);
+            }
+
+            try {
+                int responseCode = headConnection.getResponseCode();
+                if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    LOGGER.infof("%s not modified since %s, ETag %s", zipFileURL.toString(), lastModified, etag);
+                    return new DownloadedFile(null, etag, lastModified, null);
+                }
+
+                long contentLength = headConnection.getContentLengthLong();
+                String remoteEtag = headConnection.getHeaderField("ETag");
+                String remoteLastModified = headConnection.getHeaderField("Last-Modified");
+                boolean acceptRanges = "bytes".equalsIgnoreCase(headConnection.getHeaderField("Accept-Ranges"));
+
+                // 'If-Range' requires a strong ETag or a date
+                String validator = remoteEtag != null && !remoteEtag.startsWith("W/") ? remoteEtag : remoteLastModified;
+
+                if (responseCode == HttpURLConnection.HTTP_OK && acceptRanges && validator != null && contentLength > downloadChunkSize) {
+                    // Same name for the same remote file, so a previous failed download is resumed
+                    String downloadKey = FileHelper.toHex(FileHelper.createSha256Digest().digest((zipURL + "|" + validator + "|" + contentLength).getBytes(StandardCharsets.UTF_8)));
+                    File chunkedZipFile = workingDirectoryPath.resolve("padron-" + downloadKey.substring(0, 16) + ".zip").toFile();
+
+                    LOGGER.infof("Downloading %s into %s in ranges of %s bytes", zipFileURL.toString(), chunkedZipFile, downloadChunkSize);
+                    try {
+                        new ChunkedDownloader(zipFileURL, connectionTimeout, readTimeout, downloadThreads, downloadChunkSize, downloadRetries, progressListener)
+                                .download(chunkedZipFile, contentLength, validator);
+                        LOGGER.infof("Download finished successfully");
+
+                        return new DownloadedFile(chunkedZipFile, remoteEtag, remoteLastModified, FileHelper.sha256(chunkedZipFile));
+                    } catch (ChunkedDownloader.RangeRejectedException e) {
+                        LOGGER.warnf("Downloading the whole file instead of ranges: %s", e.getMessage());
+                        Files.deleteIfExists(chunkedZipFile.toPath());
+                        Files.deleteIfExists(ChunkedDownloader.getPartsFile(chunkedZipFile).toPath());
+                    }
+                }
+            } finally {
+                headConnection.disconnect();
+            }
+        }
+
+        URLConnection connection = zipFileURL.openConnection();
+        connection.setConnectTimeout(connectionTimeout);
+        connection.setReadTimeout(readTimeout);
+        if (etag != null) {
+            connection.setRequestProperty("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            connection.setRequestProperty("If-Modified-Since", lastModified);
+        }
+
+        if (connection instanceof HttpURLConnection && ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            LOGGER.infof("%s not modified since %s, ETag %s", zipFileURL.toString(), lastModified, etag);
+            ((HttpURLConnection) connection).disconnect();
+            return new DownloadedFile(null, etag, lastModified, null);
+        }
+
         LOGGER.infof("Downloading %s into %s", zipFileURL.toString(), zipFile);
-        FileUtils.copyURLToFile(zipFileURL, zipFile, connectionTimeout, readTimeout);
+        MessageDigest digest = FileHelper.createSha256Digest();
+        try (InputStream inputStream = new DigestInputStream(connection.getInputStream(), digest)) {
+            FileUtils.copyInputStreamToFile(inputStream, zipFile);
+        }
+        progressListener.accept(zipFile.length());
         LOGGER.infof("Download finished successfully");
 
-        return zipFile;
+        return new DownloadedFile(
+                zipFile,
+                connection.getHeaderField("ETag"),
+                connection.getHeaderField("Last-Modified"),
+                FileHelper.toHex(digest.digest())
+        );
     }
 
     public File unzip(File file) throws IOException {
@@ -81,6 +197,11 @@ public class FileManager {
         return unzipFolderPath.toFile();
     }
 
+    public InputStream openFirstTxtEntry(File zipFile) throws IOException {
+        LOGGER.infof("Opening first *.txt entry of %s", zipFile.toString());
+        return FileHelper.openZipEntry(zipFile, "txt");
+    }
+
     public File getFirstTxtFileFound(File[] files) throws IOException {
         LOGGER.infof("Searching for *.txt file");
 
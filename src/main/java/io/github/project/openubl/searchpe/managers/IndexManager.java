@@ -0,0 +1,534 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.managers;
+
+import io.github.project.openubl.searchpe.models.ContribuyenteRepresentation;
+import io.github.project.openubl.searchpe.models.RucStorage;
+import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteEntity;
+import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteId;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.runtime.StartupEvent;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.search.mapper.orm.automaticindexing.session.AutomaticIndexingSynchronizationStrategy;
+import org.hibernate.search.mapper.orm.session.SearchSession;
+import org.jboss.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.transaction.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the Elasticsearch documents of a whole version once its rows are in the database.
+ * Works like the Hibernate Search MassIndexer but restricted to a single version: the calling thread
+ * reads RUCs in pages of 'fetch-size' and splits them into ranges of 'batch-size' RUCs, which are loaded
+ * and indexed by 'threads' workers, each range in its own transaction.
+ */
+@ApplicationScoped
+public class IndexManager {
+
+    private static final Logger LOGGER = Logger.getLogger(IndexManager.class);
+
+    /**
+     * Format of the documents, to be incremented whenever fields are added to them. Stored in the '_meta' of the
+     * mappings of an index once every document of its version is written.
+     */
+    static final int DOCUMENT_FORMAT = 1;
+    static final String DOCUMENT_FORMAT_META = "searchpe_document_format";
+
+    @ConfigProperty(name = "searchpe.indexing.threads", defaultValue = "4")
+    Integer threads;
+
+    @ConfigProperty(name = "searchpe.indexing.fetch-size", defaultValue = "10000")
+    Integer fetchSize;
+
+    @ConfigProperty(name = "searchpe.indexing.batch-size", defaultValue = "1000")
+    Integer batchSize;
+
+    @ConfigProperty(name = "searchpe.indexing.index-per-version", defaultValue = "true")
+    boolean indexPerVersion;
+
+    @ConfigProperty(name = "searchpe.storage.ruc", defaultValue = "VARCHAR")
+    RucStorage rucStorage;
+
+    @Inject
+    UserTransaction tx;
+
+    @Inject
+    EntityManager entityManager;
+
+    @Inject
+    SearchSession searchSession;
+
+    @Inject
+    ElasticsearchManager elasticsearchManager;
+
+    @Inject
+    ActiveVersionManager activeVersionManager;
+
+    @Inject
+    MeterRegistry registry;
+
+    private Timer rangeTimer;
+    private Counter indexedDocuments;
+
+    /**
+     * Version whose own index is referenced by the read alias, null while not loaded. Other nodes move the alias too,
+     * so it is only kept for the generation of {@link ActiveVersionManager} it was loaded in.
+     */
+    private volatile ReadIndex readIndex;
+
+    @PostConstruct
+    void init() {
+        rangeTimer = Timer.builder("searchpe.indexing.range")
+                .description("Latency of writing a range of documents into Elasticsearch")
+                .publishPercentileHistogram()
+                .register(registry);
+        indexedDocuments = Counter.builder("searchpe.indexing.documents")
+                .description("Documents written into Elasticsearch")
+                .register(registry);
+    }
+
+    void onStart(@Observes StartupEvent ev) {
+        // An empty index can not hold documents of an older format
+        try {
+            String indexName = elasticsearchManager.getReadIndexName();
+            if (elasticsearchManager.getMappingMeta(indexName, DOCUMENT_FORMAT_META) < DOCUMENT_FORMAT && elasticsearchManager.count(indexName) == 0) {
+                elasticsearchManager.putMappingMeta(indexName, DOCUMENT_FORMAT_META, DOCUMENT_FORMAT);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not check the document format of the read index", e);
+        }
+    }
+
+    /**
+     * Create the index of a version and point the write alias to it, so every document written
+     * from now on, automatically or by {@link #indexVersion(Long)}, goes to that index.
+     */
+    public void prepareVersionIndex(Long versionId) throws IOException {
+        if (!indexPerVersion) {
+            return;
+        }
+
+        String indexName = elasticsearchManager.getVersionIndexName(versionId);
+        if (!elasticsearchManager.indexExists(indexName)) {
+            elasticsearchManager.createIndexLike(elasticsearchManager.getWriteIndexName(), indexName);
+        }
+        elasticsearchManager.moveAlias(elasticsearchManager.getWriteIndexName(), indexName, true);
+    }
+
+    /**
+     * Point the read alias to the index of the version, searches see its documents only. Every document of the
+     * version is already written, so the index is marked with the current {@link #DOCUMENT_FORMAT}.
+     */
+    public void activateVersionIndex(Long versionId) throws IOException {
+        String indexName = indexPerVersion ? elasticsearchManager.getVersionIndexName(versionId) : elasticsearchManager.getWriteIndexName();
+        if (elasticsearchManager.indexExists(indexName)) {
+            elasticsearchManager.putMappingMeta(indexName, DOCUMENT_FORMAT_META, DOCUMENT_FORMAT);
+            if (indexPerVersion) {
+                elasticsearchManager.moveAlias(elasticsearchManager.getReadIndexName(), indexName, false);
+            }
+            readIndex = null;
+        }
+    }
+
+    /**
+     * Drop the index of a deleted version. Aliases pointing to it are moved first to the index
+     * of the version that is active now or, if it has none, to the index shared by all versions.
+     */
+    public void deleteVersionIndex(Long versionId, Long activeVersionId) throws IOException {
+        if (!indexPerVersion) {
+            return;
+        }
+
+        String indexName = elasticsearchManager.getVersionIndexName(versionId);
+        if (!elasticsearchManager.indexExists(indexName)) {
+            return;
+        }
+
+        String fallbackIndexName;
+        if (activeVersionId != null && elasticsearchManager.indexExists(elasticsearchManager.getVersionIndexName(activeVersionId))) {
+            fallbackIndexName = elasticsearchManager.getVersionIndexName(activeVersionId);
+        } else {
+            fallbackIndexName = elasticsearchManager.getDefaultIndexName()
+                    .orElseThrow(() -> new IOException("No index to move the aliases of " + indexName + " to"));
+        }
+
+        if (elasticsearchManager.getAliasIndexes(elasticsearchManager.getReadIndexName()).contains(indexName)) {
+            elasticsearchManager.moveAlias(elasticsearchManager.getReadIndexName(), fallbackIndexName, false);
+            readIndex = null;
+        }
+        if (elasticsearchManager.getAliasIndexes(elasticsearchManager.getWriteIndexName()).contains(indexName)) {
+            elasticsearchManager.moveAlias(elasticsearchManager.getWriteIndexName(), fallbackIndexName, true);
+        }
+
+        elasticsearchManager.deleteIndex(indexName);
+    }
+
+    /**
+     * @return true if searches only see documents of the given version, so they do not need to filter by version
+     */
+    public boolean isVersionIndexActive(Long versionId) {
+        if (!indexPerVersion) {
+            return false;
+        }
+
+        ReadIndex current = getReadIndex();
+        return current != null && versionId.equals(current.versionId);
+    }
+
+    /**
+     * @return true if documents seen by searches hold every field of {@link ContribuyenteRepresentation}. Documents
+     * indexed by a previous release do not, searches have to load their entities until the version is indexed again.
+     */
+    public boolean isReadIndexProjectable() {
+        ReadIndex current = getReadIndex();
+        return current != null && current.projectable;
+    }
+
+    private ReadIndex getReadIndex() {
+        // Read before the alias, so a version change while reading it is not missed
+        long generation = activeVersionManager.getGeneration();
+        ReadIndex current = readIndex;
+        if (current == null || current.generation != generation) {
+            try {
+                String prefix = elasticsearchManager.getVersionIndexPrefix();
+                Long versionIdFound = null;
+                for (String indexName : elasticsearchManager.getAliasIndexes(elasticsearchManager.getReadIndexName())) {
+                    if (indexName.startsWith(prefix)) {
+                        versionIdFound = Long.valueOf(indexName.substring(prefix.length()));
+                    }
+                }
+                boolean projectable = elasticsearchManager.getMappingMeta(elasticsearchManager.getReadIndexName(), DOCUMENT_FORMAT_META) >= DOCUMENT_FORMAT;
+                if (!projectable) {
+                    LOGGER.warnf("Documents of the read index predate format %s, searches load entities until the active version is imported again", DOCUMENT_FORMAT);
+                }
+
+                current = new ReadIndex(versionIdFound, projectable, generation);
+                readIndex = current;
+            } catch (IOException | NumberFormatException e) {
+                LOGGER.warn("Could not resolve the index referenced by the read alias", e);
+                return null;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return true if the version has an index of its own, so {@link #indexVersionChanges(Long, Long)} can use it as base
+     */
+    public boolean hasVersionIndex(Long versionId) throws IOException {
+        if (!indexPerVersion) {
+            return false;
+        }
+
+        String indexName = elasticsearchManager.getVersionIndexName(versionId);
+        if (!elasticsearchManager.indexExists(indexName)) {
+            return false;
+        }
+
+        // Unchanged documents are copied as they are, they would keep lacking the fields added since
+        if (elasticsearchManager.getMappingMeta(indexName, DOCUMENT_FORMAT_META) < DOCUMENT_FORMAT) {
+            LOGGER.infof("Documents of index %s predate format %s, it can not be used as base", indexName, DOCUMENT_FORMAT);
+            return false;
+        }
+        return true;
+    }
+
+    public void indexVersion(Long versionId) throws IOException {
+        LOGGER.infof("Start indexing contribuyentes of version %s", versionId);
+        long startTime = Calendar.getInstance().getTimeInMillis();
+
+        String indexName = elasticsearchManager.getWriteIndexName();
+        Map<String, String> previousSettings = elasticsearchManager.prepareForBulkIndexing(indexName);
+
+        long count;
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            count = indexRanges(versionId, null);
+        } catch (IOException | RuntimeException e) {
+            restoreSettingsAfterFailure(indexName, previousSettings, e);
+            throw e;
+        }
+        elasticsearchManager.restoreSettings(indexName, previousSettings);
+        sample.stop(registry.timer("searchpe.indexing", "mode", "full"));
+
+        long endTime = Calendar.getInstance().getTimeInMillis();
+        LOGGER.infof("Indexed %s contribuyentes in %s milliseconds.", count, (endTime - startTime));
+    }
+
+    /**
+     * Build the index of a version from the index of a previous one: its documents are copied by Elasticsearch
+     * and only the contribuyentes inserted, changed or removed since the previous version are written.
+     */
+    public void indexVersionChanges(Long versionId, Long previousVersionId) throws IOException {
+        LOGGER.infof("Start indexing changes of version %s since version %s", versionId, previousVersionId);
+        long startTime = Calendar.getInstance().getTimeInMillis();
+
+        String indexName = elasticsearchManager.getVersionIndexName(versionId);
+        Map<String, String> previousSettings = elasticsearchManager.prepareForBulkIndexing(indexName);
+
+        long count;
+        long removed;
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            elasticsearchManager.reindexVersion(elasticsearchManager.getVersionIndexName(previousVersionId), indexName, versionId);
+            count = indexRanges(versionId, previousVersionId);
+            removed = purgeRemoved(versionId, previousVersionId);
+        } catch (IOException | RuntimeException e) {
+            restoreSettingsAfterFailure(indexName, previousSettings, e);
+            throw e;
+        }
+        elasticsearchManager.restoreSettings(indexName, previousSettings);
+        sample.stop(registry.timer("searchpe.indexing", "mode", "delta"));
+
+        long endTime = Calendar.getInstance().getTimeInMillis();
+        LOGGER.infof("Indexed %s changed and removed %s contribuyentes in %s milliseconds.", count, removed, (endTime - startTime));
+    }
+
+    /**
+     * The failure of indexing is the one thrown, a failure restoring the settings is only attached to it.
+     */
+    private void restoreSettingsAfterFailure(String indexName, Map<String, String> settings, Exception failure) {
+        try {
+            elasticsearchManager.restoreSettings(indexName, settings);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.errorf(e, "Could not restore settings of index %s", indexName);
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * @param previousVersionId if not null, only contribuyentes inserted or changed since this version are indexed
+     */
+    private long indexRanges(Long versionId, Long previousVersionId) throws IOException {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "searchpe-indexing-" + versionId + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Bounds the number of ranges waiting for a worker
+        Semaphore pending = new Semaphore(threads * 2);
+        long count = 0;
+        ExecutorCompletionService<Integer> completionService = new ExecutorCompletionService<>(executor);
+        int submitted = 0;
+
+        try {
+            String lastRuc = rucStorage.getMinRuc();
+            while (true) {
+                List<String> rucs = previousVersionId == null
+                        ? findRucs(versionId, lastRuc, fetchSize)
+                        : findChangedRucs(versionId, previousVersionId, lastRuc, fetchSize);
+
+                for (int from = 0; from < rucs.size(); from += batchSize) {
+                    List<String> rangeRucs = new ArrayList<>(rucs.subList(from, Math.min(from + batchSize, rucs.size())));
+
+                    pending.acquire();
+                    completionService.submit(() -> {
+                        try {
+                            return indexRange(versionId, rangeRucs);
+                        } finally {
+                            pending.release();
+                        }
+                    });
+                    submitted++;
+                }
+
+                // Surface worker failures as soon as possible
+                Future<Integer> done;
+                while ((done = completionService.poll()) != null) {
+                    count += done.get();
+                    submitted--;
+                }
+
+                if (rucs.size() < fetchSize) {
+                    break;
+                }
+                lastRuc = rucs.get(rucs.size() - 1);
+            }
+
+            for (; submitted > 0; submitted--) {
+                count += completionService.take().get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } catch (SystemException | NotSupportedException | HeuristicRollbackException | HeuristicMixedException | RollbackException e) {
+            throw new IOException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return count;
+    }
+
+    /**
+     * Delete the documents, copied from the previous version, of contribuyentes that do not exist anymore.
+     */
+    private long purgeRemoved(Long versionId, Long previousVersionId) throws IOException {
+        long count = 0;
+        try {
+            String lastRuc = rucStorage.getMinRuc();
+            while (true) {
+                List<String> rucs = findRemovedRucs(versionId, previousVersionId, lastRuc, fetchSize);
+
+                tx.begin();
+                try {
+                    searchSession.automaticIndexingSynchronizationStrategy(AutomaticIndexingSynchronizationStrategy.writeSync());
+                    for (String ruc : rucs) {
+                        searchSession.indexingPlan().purge(ContribuyenteEntity.class, new ContribuyenteId(versionId, ruc), null);
+                    }
+                    tx.commit();
+                } catch (RuntimeException e) {
+                    tx.rollback();
+                    throw e;
+                }
+                count += rucs.size();
+
+                if (rucs.size() < fetchSize) {
+                    break;
+                }
+                lastRuc = rucs.get(rucs.size() - 1);
+            }
+        } catch (SystemException | NotSupportedException | HeuristicRollbackException | HeuristicMixedException | RollbackException e) {
+            throw new IOException(e);
+        }
+        return count;
+    }
+
+    private List<String> findRucs(Long versionId, String lastRuc, int maxResults) throws SystemException, NotSupportedException, HeuristicRollbackException, HeuristicMixedException, RollbackException {
+        tx.begin();
+        try {
+            List<String> rucs = entityManager
+                    .createQuery("select c.id.ruc from ContribuyenteEntity c where c.id.versionId = :versionId and c.id.ruc > :ruc order by c.id.ruc", String.class)
+                    .setParameter("versionId", versionId)
+                    .setParameter("ruc", lastRuc)
+                    .setMaxResults(maxResults)
+                    .getResultList();
+
+            tx.commit();
+            return rucs;
+        } catch (RuntimeException e) {
+            tx.rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * @return RUCs of the version that do not exist in the previous version or whose row hash changed
+     */
+    private List<String> findChangedRucs(Long versionId, Long previousVersionId, String lastRuc, int maxResults) throws SystemException, NotSupportedException, HeuristicRollbackException, HeuristicMixedException, RollbackException {
+        tx.begin();
+        try {
+            List<String> rucs = entityManager
+                    .createQuery("select c.id.ruc from ContribuyenteEntity c where c.id.versionId = :versionId and c.id.ruc > :ruc " +
+                            "and not exists (select p.id.ruc from ContribuyenteEntity p where p.id.versionId = :previousVersionId and p.id.ruc = c.id.ruc and p.rowHash = c.rowHash) " +
+                            "order by c.id.ruc", String.class)
+                    .setParameter("versionId", versionId)
+                    .setParameter("previousVersionId", previousVersionId)
+                    .setParameter("ruc", lastRuc)
+                    .setMaxResults(maxResults)
+                    .getResultList();
+
+            tx.commit();
+            return rucs;
+        } catch (RuntimeException e) {
+            tx.rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * @return RUCs of the previous version that do not exist in the version
+     */
+    private List<String> findRemovedRucs(Long versionId, Long previousVersionId, String lastRuc, int maxResults) throws SystemException, NotSupportedException, HeuristicRollbackException, HeuristicMixedException, RollbackException {
+        tx.begin();
+        try {
+            List<String> rucs = entityManager
+                    .createQuery("select p.id.ruc from ContribuyenteEntity p where p.id.versionId = :previousVersionId and p.id.ruc > :ruc " +
+                            "and not exists (select c.id.ruc from ContribuyenteEntity c where c.id.versionId = :versionId and c.id.ruc = p.id.ruc) " +
+                            "order by p.id.ruc", String.class)
+                    .setParameter("versionId", versionId)
+                    .setParameter("previousVersionId", previousVersionId)
+                    .setParameter("ruc", lastRuc)
+                    .setMaxResults(maxResults)
+                    .getResultList();
+
+            tx.commit();
+            return rucs;
+        } catch (RuntimeException e) {
+            tx.rollback();
+            throw e;
+        }
+    }
+
+    private int indexRange(Long versionId, List<String> rucs) throws SystemException, NotSupportedException, HeuristicRollbackException, HeuristicMixedException, RollbackException {
+        tx.begin();
+        try {
+            List<ContribuyenteEntity> contribuyentes = entityManager
+                    .createQuery("select c from ContribuyenteEntity c where c.id.versionId = :versionId and c.id.ruc in :rucs", ContribuyenteEntity.class)
+                    .setParameter("versionId", versionId)
+                    .setParameter("rucs", rucs)
+                    .getResultList();
+
+            // Documents become visible once the index is refreshed at the end of the whole indexing
+            searchSession.automaticIndexingSynchronizationStrategy(AutomaticIndexingSynchronizationStrategy.writeSync());
+            contribuyentes.forEach(searchSession.indexingPlan()::addOrUpdate);
+
+            // Documents are sent to Elasticsearch on commit
+            Timer.Sample sample = Timer.start(registry);
+            tx.commit();
+            sample.stop(rangeTimer);
+            indexedDocuments.increment(contribuyentes.size());
+            return contribuyentes.size();
+        } catch (RuntimeException e) {
+            tx.rollback();
+            throw e;
+        }
+    }
+
+    private static class ReadIndex {
+        /**
+         * Null if the read alias points to an index shared by several versions
+         */
+        private final Long versionId;
+        private final boolean projectable;
+        private final long generation;
+
+        private ReadIndex(Long versionId, boolean projectable, long generation) {
+            this.versionId = versionId;
+            this.projectable = projectable;
+            this.generation = generation;
+        }
+    }
+
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.managers;
+
+import io.agroal.api.AgroalDataSource;
+import io.github.project.openubl.searchpe.models.RucStorage;
+import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteEntity;
+import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteId;
+import io.github.project.openubl.searchpe.models.jpa.entity.VersionEntity;
+import io.github.project.openubl.searchpe.utils.DataHelper;
+import io.github.project.openubl.searchpe.utils.RucIndex;
+import io.github.project.openubl.searchpe.utils.RucIndexWriter;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Calendar;
+import java.util.Optional;
+
+/**
+ * Memory mapped {@link RucIndex} files, one per version, so lookups by RUC are served without the database
+ * and without keeping the contribuyentes in the heap. A version without its file, e.g. imported by another
+ * node that does not share 'searchpe.ruc-index.directory', is looked up in the database as usual.
+ * <p>
+ * Files are named after the id and the creation time of their version, so a file left by a deleted database
+ * is never taken for a new version reusing its id.
+ */
+@ApplicationScoped
+public class RucIndexManager {
+
+    private static final Logger LOGGER = Logger.getLogger(RucIndexManager.class);
+
+    /**
+     * A missing file is looked for again after this time, it could be written by another node sharing the directory
+     */
+    private static final long MISSING_FILE_RECHECK_MILLIS = 60_000;
+
+    @ConfigProperty(name = "searchpe.ruc-index.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "searchpe.ruc-index.directory", defaultValue = "ruc-index")
+    String directory;
+
+    @ConfigProperty(name = "searchpe.export.fetch-size", defaultValue = "10000")
+    Integer fetchSize;
+
+    @ConfigProperty(name = "searchpe.storage.ruc", defaultValue = "VARCHAR")
+    RucStorage rucStorage;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Inject
+    ContribuyenteExportManager contribuyenteExportManager;
+
+    private volatile RucIndex current;
+    private volatile Path currentFile;
+
+    // File that could not be opened, not retried on every lookup
+    private volatile Path brokenFile;
+
+    // File that did not exist when last looked for, so lookups do not wait for the lock of open() meanwhile
+    private volatile MissingFile missingFile;
+
+    /**
+     * Write the file of a version from its rows in the database, replacing any previous file.
+     * A failure is only logged, lookups of the version keep using the database.
+     */
+    public void build(VersionEntity version) {
+        if (!enabled) {
+            return;
+        }
+
+        Long versionId = version.id;
+        LOGGER.infof("Start building RUC index of version %s", versionId);
+        long startTime = Calendar.getInstance().getTimeInMillis();
+
+        Path file = getFile(version);
+        try {
+            Files.createDirectories(file.getParent());
+        } catch (IOException e) {
+            LOGGER.errorf(e, "Could not create directory of %s", file);
+            return;
+        }
+
+        // Byte order of the RUC text is the order of its numeric key
+        String sql = "SELECT " + String.join(", ", ContribuyenteExportManager.COLUMNS) +
+                " FROM contribuyente WHERE version_id = ? ORDER BY ruc" + (rucStorage == RucStorage.VARCHAR ? " COLLATE \"C\"" : "");
+
+        long count;
+        long skipped = 0;
+        try (RucIndexWriter writer = new RucIndexWriter(file, versionId);
+             Connection connection = dataSource.getConnection()) {
+            // PostgreSQL only uses a cursor, instead of reading the whole result, outside of autocommit
+            connection.setAutoCommit(false);
+            connection.setReadOnly(true);
+
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setFetchSize(fetchSize);
+                statement.setLong(1, versionId);
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        String[] columns = new String[ContribuyenteExportManager.COLUMNS.length];
+                        contribuyenteExportManager.readRow(resultSet, columns);
+
+                        if (RucIndex.toKey(columns[0]) < 0) {
+                            skipped++;
+                            continue;
+                        }
+                        writer.add(columns);
+                    }
+                }
+            } finally {
+                connection.rollback();
+            }
+
+            count = writer.finish();
+            if (file.equals(brokenFile)) {
+                brokenFile = null;
+            }
+            MissingFile missing = missingFile;
+            if (missing != null && file.equals(missing.file)) {
+                missingFile = null;
+            }
+        } catch (IOException | SQLException e) {
+            LOGGER.errorf(e, "Could not build RUC index of version %s", versionId);
+            return;
+        }
+
+        if (skipped > 0) {
+            LOGGER.warnf("%s contribuyentes of version %s do not have an 11 digit RUC and are not in its RUC index", skipped, versionId);
+        }
+
+        long endTime = Calendar.getInstance().getTimeInMillis();
+        LOGGER.infof("RUC index of version %s with %s contribuyentes built in %s milliseconds.", versionId, count, (endTime - startTime));
+    }
+
+    /**
+     * @return the mapped file of the version, empty if lookups of the version have to use the database
+     */
+    public Optional<RucIndex> getIndex(VersionEntity version) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        Path file = getFile(version);
+        RucIndex index = current;
+        if (index != null && file.equals(currentFile)) {
+            return Optional.of(index);
+        }
+        if (file.equals(brokenFile)) {
+            return Optional.empty();
+        }
+        MissingFile missing = missingFile;
+        if (missing != null && file.equals(missing.file) && System.currentTimeMillis() - missing.checkedAt < MISSING_FILE_RECHECK_MILLIS) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(open(file));
+    }
+
+    /**
+     * @return false if the RUC is left out of the files, as {@link #build(VersionEntity)} skips RUCs that are not
+     * 11 digits, so it has to be looked up in the database even if its version has a file
+     */
+    public boolean isIndexed(String ruc) {
+        return RucIndex.toKey(ruc) >= 0;
+    }
+
+    /**
+     * @param index file of the version of the id, given by {@link #getIndex(VersionEntity)}
+     */
+    public Optional<ContribuyenteEntity> find(RucIndex index, ContribuyenteId id) {
+        return index.find(id.ruc)
+                .flatMap(columns -> DataHelper.buildContribuyenteEntity(id.versionId, columns))
+                .map(contribuyente -> {
+                    // Filled by the database for entities that are loaded from it
+                    contribuyente.ruc = contribuyente.id.ruc;
+                    return contribuyente;
+                });
+    }
+
+    public void delete(Long versionId) {
+        synchronized (this) {
+            RucIndex index = current;
+            if (index != null && index.getVersionId() == versionId) {
+                current = null;
+                currentFile = null;
+                closeQuietly(index);
+            }
+        }
+
+        Path path = Paths.get(directory);
+        if (!Files.isDirectory(path)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(path, "ruc-index-" + versionId + "-*.bin")) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            LOGGER.errorf(e, "Could not delete RUC index of version %s", versionId);
+        }
+    }
+
+    /**
+     * Map the file in place of the current one, only the file of a single version is mapped at a time.
+     * Buffers of the previous file stay valid for lookups still using them.
+     *
+     * @return the mapped file, null if it does not exist or could not be opened
+     */
+    private synchronized RucIndex open(Path file) {
+        RucIndex index = current;
+        if (index != null && file.equals(currentFile)) {
+            return index;
+        }
+        if (file.equals(brokenFile)) {
+            return null;
+        }
+        if (!Files.exists(file)) {
+            missingFile = new MissingFile(file, System.currentTimeMillis());
+            return null;
+        }
+
+        try {
+            RucIndex newIndex = RucIndex.open(file);
+            current = newIndex;
+            currentFile = file;
+            if (index != null) {
+                closeQuietly(index);
+            }
+            LOGGER.infof("RUC index of version %s with %s contribuyentes mapped from %s", newIndex.getVersionId(), newIndex.getCount(), file);
+            return newIndex;
+        } catch (IOException e) {
+            LOGGER.errorf(e, "Could not open RUC index %s, lookups of its version use the database", file);
+            brokenFile = file;
+            return null;
+        }
+    }
+
+    Path getFile(VersionEntity version) {
+        long createdAt = version.createdAt != null ? version.createdAt.getTime() : 0;
+        return Paths.get(directory).resolve("ruc-index-" + version.id + "-" + createdAt + ".bin");
+    }
+
+    @PreDestroy
+    synchronized void close() {
+        if (current != null) {
+            closeQuietly(current);
+            current = null;
+            currentFile = null;
+        }
+    }
+
+    private static void closeQuietly(RucIndex index) {
+        try {
+            index.close();
+        } catch (IOException e) {
+            LOGGER.error(e);
+        }
+    }
+
+    private static class MissingFile {
+        private final Path file;
+        private final long checkedAt;
+
+        private MissingFile(Path file, long checkedAt) {
+            this.file = file;
+            this.checkedAt = checkedAt;
+        }
+    }
+
+}
@@ -16,10 +16,19 @@
  */
 package io.github.project.openubl.searchpe.managers;
 
+import io.github.project.openubl.searchpe.loaders.ContribuyenteLoaderFactory;
+import io.github.project.openubl.searchpe.loaders.ImportPipeline;
+import io.github.project.openubl.searchpe.models.DownloadedFile;
+import io.github.project.openubl.searchpe.models.RucStorage;
 import io.github.project.openubl.searchpe.models.VersionEvent;
+import io.github.project.openubl.searchpe.models.jpa.VersionRepository;
 import io.github.project.openubl.searchpe.models.jpa.entity.*;
 import io.github.project.openubl.searchpe.models.jpa.entity.Status;
-import io.github.project.openubl.searchpe.utils.DataHelper;
+import io.github.project.openubl.searchpe.utils.FileHelper;
+import io.github.project.openubl.searchpe.utils.PadronParser;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.apache.commons.io.FileUtils;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
@@ -27,16 +36,12 @@ import org.jboss.logging.Logger;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Event;
 import javax.inject.Inject;
-import javax.persistence.EntityManager;
 import javax.transaction.*;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.List;
-import java.util.Optional;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
 @ApplicationScoped
 public class UpgradeDataManager {
@@ -46,8 +51,23 @@ public class UpgradeDataManager {
     @ConfigProperty(name = "searchpe.sunat.filter")
     Optional<List<EstadoContribuyente>> sunatFilter;
 
-    @ConfigProperty(name = "quarkus.hibernate-orm.jdbc.statement-batch-size", defaultValue = "1000")
-    Integer jdbcBatchSize;
+    @ConfigProperty(name = "searchpe.import.streaming", defaultValue = "true")
+    boolean streaming;
+
+    @ConfigProperty(name = "searchpe.import.parser-threads", defaultValue = "2")
+    Integer parserThreads;
+
+    @ConfigProperty(name = "searchpe.import.writer-threads", defaultValue = "4")
+    Integer writerThreads;
+
+    @ConfigProperty(name = "searchpe.import.queue-size", defaultValue = "16")
+    Integer queueSize;
+
+    @ConfigProperty(name = "searchpe.import.delta", defaultValue = "false")
+    boolean delta;
+
+    @ConfigProperty(name = "searchpe.storage.ruc", defaultValue = "VARCHAR")
+    RucStorage rucStorage;
 
     @Inject
     FileManager fileManager;
@@ -56,11 +76,32 @@ public class UpgradeDataManager {
     UserTransaction tx;
 
     @Inject
-    EntityManager entityManager;
+    ContribuyenteLoaderFactory loaderFactory;
+
+    @Inject
+    IndexManager indexManager;
+
+    @Inject
+    VersionManager versionManager;
+
+    @Inject
+    ActiveVersionManager activeVersionManager;
+
+    @Inject
+    VersionRepository versionRepository;
+
+    @Inject
+    RucIndexManager rucIndexManager;
+
+    @Inject
+    MeterRegistry registry;
 
     @Inject
     Event<VersionEvent.DownloadingEvent> downloadingVersionEvent;
 
+    @Inject
+    Event<VersionEvent.DownloadProgressEvent> downloadProgressEvent;
+
     @Inject
     Event<VersionEvent.UnzippingFileEvent> unzippingVersionEvent;
 
@@ -71,6 +112,100 @@ public class UpgradeDataManager {
     Event<VersionEvent.RecordsDataEvent> recordsEvent;
 
     public void upgrade(Long versionId) {
+        if (streaming) {
+            upgradeFromZipStream(versionId);
+        } else {
+            upgradeFromUnzippedFile(versionId);
+        }
+    }
+
+    /**
+     * Continue an upgrade interrupted by a crash or restart. An import whose downloaded file is still
+     * available continues from its last checkpoint, any other unfinished upgrade starts over.
+     */
+    public void resume(Long versionId) {
+        Optional<VersionEntity> versionOptional = versionRepository.findByIdOptional(versionId);
+        if (versionOptional.isEmpty()) {
+            return;
+        }
+
+        VersionEntity version = versionOptional.get();
+        switch (version.status) {
+            case SCHEDULED:
+            case DOWNLOADING:
+            case UNZIPPING:
+            case IMPORTING:
+                break;
+            default:
+                LOGGER.infof("Version %s is %s, nothing to resume", versionId, version.status);
+                return;
+        }
+
+        File sourceFile = version.sourceFile != null ? new File(version.sourceFile) : null;
+        boolean canResume;
+        try {
+            canResume = version.status == Status.IMPORTING
+                    && sourceFile != null
+                    && sourceFile.exists()
+                    && FileHelper.sha256(sourceFile).equals(version.sha256);
+        } catch (IOException e) {
+            LOGGER.error(e);
+            canResume = false;
+        }
+
+        if (!canResume) {
+            LOGGER.infof("Version %s can not be resumed, starting over", versionId);
+            versionManager.clearContribuyentes(versionId);
+            upgrade(versionId);
+            return;
+        }
+
+        LOGGER.infof("Resuming import of version %s from %s", versionId, sourceFile);
+        try (InputStream inputStream = fileManager.openFirstTxtEntry(sourceFile)) {
+            createContribuyentesFromInputStream(versionId, inputStream);
+        } catch (IOException e) {
+            LOGGER.error(e);
+            return;
+        }
+
+        LOGGER.infof("Deleting file %s", sourceFile.toString());
+        sourceFile.delete();
+    }
+
+    /**
+     * Reads the *.txt entry directly from the downloaded zip, the padrón is never unzipped to disk.
+     */
+    private void upgradeFromZipStream(Long versionId) {
+        File downloadedFile;
+
+        // Download file
+        try {
+            downloadingVersionEvent.fire(() -> versionId);
+            Optional<File> fileOptional = downloadIfChanged(versionId);
+            if (fileOptional.isEmpty()) {
+                return;
+            }
+            downloadedFile = fileOptional.get();
+        } catch (IOException e) {
+            LOGGER.error(e);
+            return;
+        }
+
+        // Persist data
+        try (InputStream inputStream = fileManager.openFirstTxtEntry(downloadedFile)) {
+            importingVersionEvent.fire(() -> versionId);
+            createContribuyentesFromInputStream(versionId, inputStream);
+        } catch (IOException e) {
+            LOGGER.error(e);
+            return;
+        }
+
+        // Clear files
+        LOGGER.infof("Deleting file %s", downloadedFile.toString());
+        downloadedFile.delete();
+    }
+
+    private void upgradeFromUnzippedFile(Long versionId) {
         File downloadedFile;
         File unzippedFolder;
         File txtFile;
@@ -78,10 +213,16 @@ public class UpgradeDataManager {
         // Download file
         try {
             downloadingVersionEvent.fire(() -> versionId);
-            downloadedFile = fileManager.downloadFile();
+            Optional<File> fileOptional = downloadIfChanged(versionId);
+            if (fileOptional.isEmpty()) {
+                return;
+            }
+            downloadedFile = fileOptional.get();
 
             unzippingVersionEvent.fire(() -> versionId);
+            Timer.Sample unzipSample = Timer.start(registry);
             unzippedFolder = fileManager.unzip(downloadedFile);
+            unzipSample.stop(registry.timer("searchpe.unzip"));
 
             txtFile = fileManager.getFirstTxtFileFound(unzippedFolder.listFiles());
         } catch (IOException e) {
@@ -110,83 +251,213 @@ public class UpgradeDataManager {
         }
     }
 
-    public void createContribuyentesFromFile(Long versionId, File file) throws IOException {
-        LOGGER.infof("Start importing contribuyentes");
-        long startTime = Calendar.getInstance().getTimeInMillis();
-
-        int cont = 0;
+    /**
+     * Download the padrón sending the ETag and Last-Modified of the active version. If the server answers
+     * it was not modified, or the content has the same SHA-256, the version is marked as {@link Status#UNCHANGED}.
+     *
+     * @return the downloaded file, empty if there is nothing to import
+     */
+    private Optional<File> downloadIfChanged(Long versionId) throws IOException {
+        Optional<VersionEntity> previousVersion = activeVersionManager.getActiveVersion();
+
+        // Progress is reported as a total, ranges downloaded in parallel may report it out of order
+        Counter downloadedBytes = registry.counter("searchpe.download.bytes");
+        AtomicLong reportedBytes = new AtomicLong();
+
+        Timer.Sample downloadSample = Timer.start(registry);
+        DownloadedFile downloadedFile = fileManager.downloadFile(
+                previousVersion.map(f -> f.etag).orElse(null),
+                previousVersion.map(f -> f.lastModified).orElse(null),
+                bytes -> {
+                    long previousBytes = reportedBytes.getAndAccumulate(bytes, Math::max);
+                    if (bytes > previousBytes) {
+                        downloadedBytes.increment(bytes - previousBytes);
+                    }
+                    downloadProgressEvent.fire(new VersionEvent.DefaultDownloadProgressEvent(versionId, bytes));
+                }
+        );
+        downloadSample.stop(registry.timer("searchpe.download", "result", downloadedFile.isNotModified() ? "not-modified" : "downloaded"));
 
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            boolean skip = true;
+        if (downloadedFile.isNotModified() && !previousVersion.isPresent()) {
+            // Answered by a proxy or mirror, as no conditional headers were sent
+            throw new IOException("Padrón not modified but there is no previous version to keep");
+        }
 
-            int batchSize = jdbcBatchSize;
+        boolean unchanged = previousVersion.isPresent() && (downloadedFile.isNotModified() || downloadedFile.getSha256().equals(previousVersion.get().sha256));
+        if (unchanged) {
+            LOGGER.infof("Padrón did not change since version %s, skipping import", previousVersion.map(f -> f.id).orElse(null));
+            if (downloadedFile.getFile() != null) {
+                downloadedFile.getFile().delete();
+            }
+        }
 
+        try {
             tx.begin();
 
-            while ((line = br.readLine()) != null) {
-                if (skip) {
-                    skip = false;
-                    continue;
-                }
-
-                String[] columns = DataHelper.readLine(line, 15);
+            VersionEntity version = VersionEntity.findById(versionId);
+            if (unchanged) {
+                VersionEntity previous = previousVersion.get();
+                version.status = Status.UNCHANGED;
+                version.etag = previous.etag;
+                version.lastModified = previous.lastModified;
+                version.sha256 = previous.sha256;
+            } else {
+                version.etag = downloadedFile.getEtag();
+                version.lastModified = downloadedFile.getLastModified();
+                version.sha256 = downloadedFile.getSha256();
+                version.sourceFile = downloadedFile.getFile().getAbsolutePath();
+            }
+            version.updatedAt = new Date();
+            version.persist();
 
-                Optional<ContribuyenteEntity> contribuyenteEntityOptional = DataHelper.buildContribuyenteEntity(versionId, columns);
-                if (contribuyenteEntityOptional.isEmpty()) {
-                    continue;
-                }
-                ContribuyenteEntity contribuyente = contribuyenteEntityOptional.get();
+            tx.commit();
+        } catch (NotSupportedException | HeuristicRollbackException | HeuristicMixedException | RollbackException | SystemException e) {
+            try {
+                tx.rollback();
+            } catch (SystemException se) {
+                LOGGER.error(se);
+            }
+            throw new IOException(e);
+        }
 
-                if (sunatFilter.isPresent()) {
-                    Optional<EstadoContribuyente> optional = EstadoContribuyente.fromString(contribuyente.estadoContribuyente);
-                    if (optional.isEmpty() || !sunatFilter.get().contains(optional.get())) {
-                        continue;
-                    }
-                }
+        return unchanged ? Optional.empty() : Optional.of(downloadedFile.getFile());
+    }
 
-                entityManager.persist(contribuyente);
-                cont++;
-                if (cont % batchSize == 0) {
-                    entityManager.flush();
-                    entityManager.clear();
-                    tx.commit();
+    public void createContribuyentesFromFile(Long versionId, File file) throws IOException {
+        try (InputStream inputStream = new FileInputStream(file)) {
+            createContribuyentesFromInputStream(versionId, inputStream);
+        }
+    }
 
-                    recordsEvent.fire(new VersionEvent.DefaultRecordsDataEvent(versionId, cont));
+    public void createContribuyentesFromInputStream(Long versionId, InputStream inputStream) throws IOException {
+        LOGGER.infof("Start importing contribuyentes");
+        long startTime = Calendar.getInstance().getTimeInMillis();
 
-                    tx.begin();
-                }
+        ImportPipeline pipeline = new ImportPipeline(
+                versionId,
+                loaderFactory::create,
+                buildFilter(),
+                records -> recordsEvent.fire(new VersionEvent.DefaultRecordsDataEvent(versionId, records)),
+                versionManager.findCompletedBlocks(versionId),
+                parserThreads,
+                writerThreads,
+                queueSize
+        );
+
+        // Read before this version could become the active one
+        Optional<Long> previousVersionId = activeVersionManager.getActiveVersion().map(f -> f.id);
+
+        versionManager.createPartition(versionId);
+        indexManager.prepareVersionIndex(versionId);
+
+        int cont;
+        Timer.Sample importSample = Timer.start(registry);
+        try (Reader reader = new InputStreamReader(inputStream)) {
+            cont = pipeline.run(reader);
+        }
+        importSample.stop(registry.timer("searchpe.import"));
+        boolean indexed = pipeline.isIndexed();
+
+        if (!indexed) {
+            if (delta && previousVersionId.isPresent() && indexManager.hasVersionIndex(previousVersionId.get())) {
+                indexManager.indexVersionChanges(versionId, previousVersionId.get());
+            } else {
+                indexManager.indexVersion(versionId);
             }
+        }
+        VersionEntity version;
+        try {
+            tx.begin();
+
+            version = VersionEntity.findById(versionId);
+            version.status = Status.COMPLETED;
+            version.updatedAt = new Date();
+            version.records = cont;
+
+            VersionEntity.persist(version);
 
             tx.commit();
-        } catch (NotSupportedException | HeuristicRollbackException | SystemException | RollbackException | HeuristicMixedException e) {
-            LOGGER.error(e);
+        } catch (NotSupportedException | HeuristicRollbackException | HeuristicMixedException | RollbackException | SystemException e) {
+            try {
+                tx.rollback();
+            } catch (SystemException se) {
+                LOGGER.error(se);
+            }
             return;
         }
 
+        // Searches only see the version once it is committed as COMPLETED
+        try {
+            indexManager.activateVersionIndex(versionId);
+        } catch (IOException | RuntimeException e) {
+            // The read alias still points to the previous version, which has to remain the active one
+            markVersionAsError(versionId);
+            throw e;
+        }
+        activeVersionManager.invalidate();
+        versionManager.notifyVersionChanged(versionId);
+        versionManager.deleteCheckpoints(versionId);
+
+        // Lookups fall back to the database until the file is written
+        rucIndexManager.build(version);
+
+        long endTime = Calendar.getInstance().getTimeInMillis();
+        LOGGER.infof("Import contribuyentes finished successfully in " + (endTime - startTime) + " milliseconds.");
+    }
 
+    private void markVersionAsError(Long versionId) {
         try {
             tx.begin();
 
             VersionEntity version = VersionEntity.findById(versionId);
-            version.status = Status.COMPLETED;
+            version.status = Status.ERROR;
             version.updatedAt = new Date();
-            version.records = cont;
 
             VersionEntity.persist(version);
 
             tx.commit();
+            activeVersionManager.invalidate();
         } catch (NotSupportedException | HeuristicRollbackException | HeuristicMixedException | RollbackException | SystemException e) {
             try {
                 tx.rollback();
             } catch (SystemException se) {
                 LOGGER.error(se);
             }
-            return;
+            LOGGER.errorf(e, "Could not mark version %s as %s", versionId, Status.ERROR);
         }
+    }
 
-        long endTime = Calendar.getInstance().getTimeInMillis();
-        LOGGER.infof("Import contribuyentes finished successfully in " + (endTime - startTime) + " milliseconds.");
+    /**
+     * @return filter applying searchpe.sunat.filter and dropping RUCs that searchpe.storage.ruc can not store,
+     * safe to be used by several parser threads. Rows accepted and filtered out are counted, together they give the parse rate.
+     */
+    private Predicate<PadronParser.Row> buildFilter() {
+        Counter acceptedRows = registry.counter("searchpe.import.rows", "result", "accepted");
+        Counter filteredRows = registry.counter("searchpe.import.rows", "result", "filtered");
+
+        Predicate<PadronParser.Row> filter = row -> true;
+        if (rucStorage != RucStorage.VARCHAR) {
+            filter = row -> rucStorage.accepts(row.getString(PadronParser.RUC));
+        }
+
+        if (sunatFilter.isPresent()) {
+            List<EstadoContribuyente> estadosToImport = sunatFilter.get();
+            Map<String, Boolean> estadosAccepted = new ConcurrentHashMap<>();
+            filter = filter.and(row -> {
+                String estado = row.getString(PadronParser.ESTADO_CONTRIBUYENTE);
+                return estado != null && estadosAccepted.computeIfAbsent(estado, f -> {
+                    Optional<EstadoContribuyente> optional = EstadoContribuyente.fromString(f);
+                    return optional.isPresent() && estadosToImport.contains(optional.get());
+                });
+            });
+        }
+
+        Predicate<PadronParser.Row> rowFilter = filter;
+        return row -> {
+            boolean accepted = rowFilter.test(row);
+            (accepted ? acceptedRows : filteredRows).increment();
+            return accepted;
+        };
     }
 
 }
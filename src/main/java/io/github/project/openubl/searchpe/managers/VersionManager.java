@@ -16,19 +16,203 @@
  */
 package io.github.project.openubl.searchpe.managers;
 
+import io.agroal.api.AgroalDataSource;
+import io.github.project.openubl.searchpe.events.VersionNotificationListener;
+import io.github.project.openubl.searchpe.models.RucStorage;
 import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteEntity;
 import io.github.project.openubl.searchpe.models.jpa.entity.VersionEntity;
+import io.quarkus.runtime.StartupEvent;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * CONTRIBUYENTE is list-partitioned by version_id: every imported version gets its own partition,
+ * so deleting a version drops a table instead of deleting its rows one by one.
+ */
 @Transactional
 @ApplicationScoped
 public class VersionManager {
 
+    private static final Logger LOGGER = Logger.getLogger(VersionManager.class);
+
+    /**
+     * Key of the advisory lock held while converting the RUC column
+     */
+    private static final long RUC_STORAGE_LOCK = 0x5275634c;
+
+    @ConfigProperty(name = "searchpe.storage.ruc", defaultValue = "VARCHAR")
+    RucStorage rucStorage;
+
+    @ConfigProperty(name = "searchpe.storage.conversion-timeout", defaultValue = "6H")
+    Duration conversionTimeout;
+
+    @Inject
+    EntityManager entityManager;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    void onStart(@Observes StartupEvent ev) {
+        applyRucStorage();
+    }
+
+    /**
+     * Convert the RUC column, and so every partition and the primary key, to 'searchpe.storage.ruc'.
+     * Nothing is done if the column already has that type, otherwise the whole table is rewritten.
+     * <p>
+     * The conversion runs outside of JTA, as it can take much longer than a transaction timeout, and under an
+     * advisory lock, so only one node of a cluster converts the column while the others wait for it.
+     */
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public void applyRucStorage() {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(true);
+            if (rucStorage.getDataType().equals(getRucDataType(connection))) {
+                return;
+            }
+
+            execute(connection, "SELECT pg_advisory_lock(" + RUC_STORAGE_LOCK + ")");
+            try {
+                // Another node could have converted the column while waiting for the lock
+                String dataType = getRucDataType(connection);
+                if (rucStorage.getDataType().equals(dataType)) {
+                    return;
+                }
+
+                if (rucStorage == RucStorage.BIGINT) {
+                    checkNumericRucs(connection);
+                }
+
+                LOGGER.infof("Converting RUC column from %s to %s, the table is locked until it finishes", dataType, rucStorage);
+                execute(connection, "SET statement_timeout = " + conversionTimeout.toMillis());
+                try {
+                    execute(connection, "ALTER TABLE contribuyente ALTER COLUMN ruc TYPE " + rucStorage.getColumnDefinition());
+                } finally {
+                    execute(connection, "RESET statement_timeout");
+                }
+                LOGGER.infof("RUC column converted to %s", rucStorage);
+            } finally {
+                execute(connection, "SELECT pg_advisory_unlock(" + RUC_STORAGE_LOCK + ")");
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not convert the RUC column to " + rucStorage, e);
+        }
+    }
+
+    private String getRucDataType(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT data_type FROM information_schema.columns WHERE table_schema = current_schema() AND table_name = 'contribuyente' AND column_name = 'ruc'")) {
+            return resultSet.next() ? resultSet.getString(1) : null;
+        }
+    }
+
+    /**
+     * Fail before locking the table if a stored RUC can not be converted to a number.
+     */
+    private void checkNumericRucs(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT version_id, ruc FROM contribuyente WHERE ruc::text !~ '^[1-9][0-9]{10}$' LIMIT 1")) {
+            if (resultSet.next()) {
+                throw new IllegalStateException("RUC '" + resultSet.getString(2) + "' of version " + resultSet.getLong(1) +
+                        " can not be stored as " + rucStorage + ", delete the version or keep searchpe.storage.ruc=" + RucStorage.VARCHAR);
+            }
+        }
+    }
+
+    private void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    /**
+     * Notify every node that the version changed, as done by the database when its row changes.
+     * Used for changes kept outside of the database, like the index referenced by the read alias.
+     */
+    public void notifyVersionChanged(Long versionId) {
+        entityManager
+                .createNativeQuery("NOTIFY " + VersionNotificationListener.CHANNEL + ", '" + versionId + "'")
+                .executeUpdate();
+    }
+
+    public void createPartition(Long versionId) {
+        entityManager
+                .createNativeQuery("CREATE TABLE IF NOT EXISTS " + getPartitionName(versionId) + " PARTITION OF contribuyente FOR VALUES IN (" + versionId + ")")
+                .executeUpdate();
+    }
+
     public void deleteVersion(Long versionId) {
-        ContribuyenteEntity.delete("id.versionId", versionId);
+        if (partitionExists(versionId)) {
+            String partitionName = getPartitionName(versionId);
+            entityManager.createNativeQuery("ALTER TABLE contribuyente DETACH PARTITION " + partitionName).executeUpdate();
+            entityManager.createNativeQuery("DROP TABLE " + partitionName).executeUpdate();
+        } else {
+            // Rows stored in the default partition
+            ContribuyenteEntity.delete("id.versionId", versionId);
+        }
         VersionEntity.delete("id", versionId);
     }
 
+    /**
+     * Remove the rows and checkpoints of an import that cannot be resumed, so it can start over.
+     */
+    public void clearContribuyentes(Long versionId) {
+        if (partitionExists(versionId)) {
+            entityManager.createNativeQuery("TRUNCATE TABLE " + getPartitionName(versionId)).executeUpdate();
+        } else {
+            ContribuyenteEntity.delete("id.versionId", versionId);
+        }
+        deleteCheckpoints(versionId);
+    }
+
+    /**
+     * @return records of each block already committed by the import of the version, by block index
+     */
+    public Map<Long, Integer> findCompletedBlocks(Long versionId) {
+        List<?> rows = entityManager
+                .createNativeQuery("SELECT block, records FROM import_checkpoint WHERE version_id = :versionId")
+                .setParameter("versionId", versionId)
+                .getResultList();
+
+        Map<Long, Integer> result = new HashMap<>();
+        for (Object row : rows) {
+            Object[] columns = (Object[]) row;
+            result.put(((Number) columns[0]).longValue(), ((Number) columns[1]).intValue());
+        }
+        return result;
+    }
+
+    public void deleteCheckpoints(Long versionId) {
+        entityManager.createNativeQuery("DELETE FROM import_checkpoint WHERE version_id = :versionId")
+                .setParameter("versionId", versionId)
+                .executeUpdate();
+    }
+
+    private boolean partitionExists(Long versionId) {
+        Object result = entityManager
+                .createNativeQuery("SELECT to_regclass(:partitionName) IS NOT NULL")
+                .setParameter("partitionName", getPartitionName(versionId))
+                .getSingleResult();
+        return Boolean.TRUE.equals(result);
+    }
+
+    private String getPartitionName(Long versionId) {
+        return "contribuyente_v" + versionId;
+    }
+
 }
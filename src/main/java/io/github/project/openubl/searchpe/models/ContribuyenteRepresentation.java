@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.models;
+
+import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteEntity;
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+import java.util.List;
+
+/**
+ * Contribuyente as returned by searches, built from the fields stored in the Elasticsearch document so a
+ * search does not load entities from the database. Serialized the same way as a contribuyente entity.
+ */
+@RegisterForReflection
+public class ContribuyenteRepresentation {
+
+    /**
+     * Index fields holding each property, in the order expected by {@link #fromValues(List)}
+     */
+    public static final String[] INDEX_FIELDS = {
+            "embeddedId.ruc", "razonSocial", "estadoContribuyente", "condicionDomicilio", "ubigeo", "tipoVia", "nombreVia",
+            "codigoZona", "tipoZona", "numero", "interior", "lote", "departamento", "manzana", "kilometro"
+    };
+
+    public String ruc;
+    public String razonSocial;
+    public String estadoContribuyente;
+    public String condicionDomicilio;
+    public String ubigeo;
+    public String tipoVia;
+    public String nombreVia;
+    public String codigoZona;
+    public String tipoZona;
+    public String numero;
+    public String interior;
+    public String lote;
+    public String departamento;
+    public String manzana;
+    public String kilometro;
+
+    public static ContribuyenteRepresentation fromEntity(ContribuyenteEntity entity) {
+        ContribuyenteRepresentation result = new ContribuyenteRepresentation();
+        result.ruc = entity.id.ruc;
+        result.razonSocial = entity.razonSocial;
+        result.estadoContribuyente = entity.estadoContribuyente;
+        result.condicionDomicilio = entity.condicionDomicilio;
+        result.ubigeo = entity.ubigeo;
+        result.tipoVia = entity.tipoVia;
+        result.nombreVia = entity.nombreVia;
+        result.codigoZona = entity.codigoZona;
+        result.tipoZona = entity.tipoZona;
+        result.numero = entity.numero;
+        result.interior = entity.interior;
+        result.lote = entity.lote;
+        result.departamento = entity.departamento;
+        result.manzana = entity.manzana;
+        result.kilometro = entity.kilometro;
+        return result;
+    }
+
+    public static ContribuyenteRepresentation fromValues(List<?> values) {
+        ContribuyenteRepresentation result = new ContribuyenteRepresentation();
+        result.ruc = (String) values.get(0);
+        result.razonSocial = (String) values.get(1);
+        result.estadoContribuyente = (String) values.get(2);
+        result.condicionDomicilio = (String) values.get(3);
+        result.ubigeo = (String) values.get(4);
+        result.tipoVia = (String) values.get(5);
+        result.nombreVia = (String) values.get(6);
+        result.codigoZona = (String) values.get(7);
+        result.tipoZona = (String) values.get(8);
+        result.numero = (String) values.get(9);
+        result.interior = (String) values.get(10);
+        result.lote = (String) values.get(11);
+        result.departamento = (String) values.get(12);
+        result.manzana = (String) values.get(13);
+        result.kilometro = (String) values.get(14);
+        return result;
+    }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.models;
+
+import java.util.Optional;
+
+/**
+ * How the total number of results of a page is computed.
+ */
+public enum CountMode {
+    /**
+     * Total not computed
+     */
+    NONE,
+
+    /**
+     * Totals are counted exactly up to a threshold, bigger totals are only a lower bound
+     */
+    APPROXIMATE,
+
+    /**
+     * Total counted exactly, whatever its size
+     */
+    EXACT;
+
+    public static Optional<CountMode> fromString(String value) {
+        for (CountMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(value)) {
+                return Optional.of(mode);
+            }
+        }
+        return Optional.empty();
+    }
+}
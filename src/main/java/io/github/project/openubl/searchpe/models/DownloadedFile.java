@@ -0,0 +1,70 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.models;
+
+import java.io.File;
+
+/**
+ * Result of a conditional download of the padrón
+ */
+public class DownloadedFile {
+
+    private final File file;
+    private final String etag;
+    private final String lastModified;
+    private final String sha256;
+
+    public DownloadedFile(File file, String etag, String lastModified, String sha256) {
+        this.file = file;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.sha256 = sha256;
+    }
+
+    /**
+     * @return the downloaded file, null if the server answered it was not modified
+     */
+    public File getFile() {
+        return file;
+    }
+
+    public boolean isNotModified() {
+        return file == null;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    @Override
+    public String toString() {
+        return "DownloadedFile{" +
+                "file=" + file +
+                ", etag='" + etag + '\'' +
+                ", lastModified='" + lastModified + '\'' +
+                ", sha256='" + sha256 + '\'' +
+                '}';
+    }
+}
@@ -21,13 +21,23 @@ import java.util.List;
 public class PageModel<T> {
     private final int offset;
     private final int limit;
-    private final long totalElements;
+    private final Long totalElements;
+    private final boolean totalElementsExact;
     private final List<T> pageElements;
 
     public PageModel(PageBean pageBean, long totalElements, List<T> pageElements) {
+        this(pageBean, totalElements, true, pageElements);
+    }
+
+    /**
+     * @param totalElements      null if it was not counted
+     * @param totalElementsExact false if totalElements is only a lower bound
+     */
+    public PageModel(PageBean pageBean, Long totalElements, boolean totalElementsExact, List<T> pageElements) {
         this.offset = pageBean.getOffset();
         this.limit = pageBean.getLimit();
         this.totalElements = totalElements;
+        this.totalElementsExact = totalElementsExact;
         this.pageElements = pageElements;
     }
 
@@ -35,6 +45,7 @@ public class PageModel<T> {
         this.offset = offset;
         this.limit = limit;
         this.totalElements = totalElements;
+        this.totalElementsExact = true;
         this.pageElements = pageElements;
     }
 
@@ -46,10 +57,14 @@ public class PageModel<T> {
         return limit;
     }
 
-    public long getTotalElements() {
+    public Long getTotalElements() {
         return totalElements;
     }
 
+    public boolean isTotalElementsExact() {
+        return totalElementsExact;
+    }
+
     public List<T> getPageElements() {
         return pageElements;
     }
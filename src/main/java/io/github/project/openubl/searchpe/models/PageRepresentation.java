@@ -47,6 +47,8 @@ public class PageRepresentation<T> {
         private Integer offset;
         private Integer limit;
         private Long count;
+        private Boolean countExact;
+        private String cursor;
 
         public Long getCount() {
             return count;
@@ -56,6 +58,17 @@ public class PageRepresentation<T> {
             this.count = count;
         }
 
+        /**
+         * @return false if count is only a lower bound of the total, null if it was not counted
+         */
+        public Boolean getCountExact() {
+            return countExact;
+        }
+
+        public void setCountExact(Boolean countExact) {
+            this.countExact = countExact;
+        }
+
         public Integer getLimit() {
             return limit;
         }
@@ -64,6 +77,17 @@ public class PageRepresentation<T> {
             this.limit = limit;
         }
 
+        /**
+         * @return cursor of the next page, null if there are no more hits
+         */
+        public String getCursor() {
+            return cursor;
+        }
+
+        public void setCursor(String cursor) {
+            this.cursor = cursor;
+        }
+
         public Integer getOffset() {
             return offset;
         }
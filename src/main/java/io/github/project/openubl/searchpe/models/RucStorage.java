@@ -0,0 +1,83 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.models;
+
+/**
+ * Type of the RUC column of CONTRIBUYENTE. Entities and the API always see the RUC as a string.
+ */
+public enum RucStorage {
+    /**
+     * RUC stored as text, as written in the padrón
+     */
+    VARCHAR("character varying", "VARCHAR(11) USING ruc::text", ""),
+
+    /**
+     * RUC stored as a number, the primary key is about 40% smaller. Only RUCs made of 11 digits
+     * and not starting with zero are imported, any other row is filtered out.
+     */
+    BIGINT("bigint", "BIGINT USING ruc::bigint", "0");
+
+    private final String dataType;
+    private final String columnDefinition;
+    private final String minRuc;
+
+    RucStorage(String dataType, String columnDefinition, String minRuc) {
+        this.dataType = dataType;
+        this.columnDefinition = columnDefinition;
+        this.minRuc = minRuc;
+    }
+
+    /**
+     * @return type of the column as named by information_schema
+     */
+    public String getDataType() {
+        return dataType;
+    }
+
+    /**
+     * @return type of the column and conversion from the other storage, for ALTER COLUMN ... TYPE
+     */
+    public String getColumnDefinition() {
+        return columnDefinition;
+    }
+
+    /**
+     * @return a RUC lower than any stored one, to start a keyset pagination
+     */
+    public String getMinRuc() {
+        return minRuc;
+    }
+
+    /**
+     * @return true if the RUC can be stored, a RUC that can not be stored does not exist
+     */
+    public boolean accepts(String ruc) {
+        if (this == VARCHAR) {
+            return true;
+        }
+        if (ruc == null || ruc.length() != 11 || ruc.charAt(0) == '0') {
+            return false;
+        }
+        for (int i = 0; i < ruc.length(); i++) {
+            char c = ruc.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -23,6 +23,11 @@ public interface VersionEvent {
         Long getVersion();
     }
 
+    interface DownloadProgressEvent {
+        Long getVersion();
+        long getDownloadedBytes();
+    }
+
     interface UnzippingFileEvent {
         Long getVersion();
     }
@@ -36,6 +41,27 @@ public interface VersionEvent {
         int getRecords();
     }
 
+    @RegisterForReflection
+    class DefaultDownloadProgressEvent implements DownloadProgressEvent {
+        private Long version;
+        private long downloadedBytes;
+
+        public DefaultDownloadProgressEvent(Long version, long downloadedBytes) {
+            this.version = version;
+            this.downloadedBytes = downloadedBytes;
+        }
+
+        @Override
+        public Long getVersion() {
+            return version;
+        }
+
+        @Override
+        public long getDownloadedBytes() {
+            return downloadedBytes;
+        }
+    }
+
     @RegisterForReflection
     class DefaultRecordsDataEvent implements RecordsDataEvent {
         private Long version;
@@ -16,6 +16,7 @@
  */
 package io.github.project.openubl.searchpe.models.jpa;
 
+import io.github.project.openubl.searchpe.models.CountMode;
 import io.github.project.openubl.searchpe.models.PageBean;
 import io.github.project.openubl.searchpe.models.PageModel;
 import io.github.project.openubl.searchpe.models.SortBean;
@@ -26,10 +27,14 @@ import io.quarkus.hibernate.orm.panache.PanacheQuery;
 import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
 import io.quarkus.panache.common.Parameters;
 import io.quarkus.panache.common.Sort;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.persistence.Query;
 import javax.transaction.Transactional;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @Transactional
 @ApplicationScoped
@@ -37,38 +42,78 @@ public class ContribuyenteRepository implements PanacheRepositoryBase<Contribuye
 
     public static final String[] SORT_BY_FIELDS = {"razonSocial"};
 
+    @ConfigProperty(name = "searchpe.search.count-threshold", defaultValue = "10000")
+    Integer countThreshold;
+
+    public List<ContribuyenteEntity> findByRucs(Long versionId, Collection<String> rucs) {
+        return list("id.versionId = :versionId and id.ruc in :rucs", Parameters
+                .with("versionId", versionId)
+                .and("rucs", rucs)
+        );
+    }
+
     public PageModel<ContribuyenteEntity> list(VersionEntity version, PageBean pageBean, List<SortBean> sortBy) {
+        return list(version, pageBean, sortBy, CountMode.EXACT);
+    }
+
+    public PageModel<ContribuyenteEntity> list(VersionEntity version, PageBean pageBean, List<SortBean> sortBy, CountMode countMode) {
         Sort sort = Sort.by();
         sortBy.forEach(f -> sort.and(f.getFieldName(), f.isAsc() ? Sort.Direction.Ascending : Sort.Direction.Descending));
 
+        Parameters parameters = Parameters.with("versionId", version.id);
         PanacheQuery<ContribuyenteEntity> query = VersionEntity
                 .find(
                         "From ContribuyenteEntity as c where c.id.versionId =:versionId",
                         sort,
-                        Parameters.with("versionId", version.id)
+                        parameters
                 )
                 .range(pageBean.getOffset(), pageBean.getOffset() + pageBean.getLimit() - 1);
 
-        long count = query.count();
-        List<ContribuyenteEntity> list = query.list();
-        return new PageModel<>(pageBean, count, list);
+        return toPageModel(query, pageBean, countMode, "SELECT 1 FROM contribuyente WHERE version_id = :versionId", parameters.map());
     }
 
     public PageModel<ContribuyenteEntity> list(VersionEntity version, String filterText, PageBean pageBean, List<SortBean> sortBy) {
+        return list(version, filterText, pageBean, sortBy, CountMode.EXACT);
+    }
+
+    public PageModel<ContribuyenteEntity> list(VersionEntity version, String filterText, PageBean pageBean, List<SortBean> sortBy, CountMode countMode) {
         Sort sort = Sort.by();
         sortBy.forEach(f -> sort.and(f.getFieldName(), f.isAsc() ? Sort.Direction.Ascending : Sort.Direction.Descending));
 
+        Parameters parameters = Parameters.with("versionId", version.id).and("filterText", "%" + filterText.toUpperCase());
         PanacheQuery<ContribuyenteEntity> query = VersionEntity
                 .find(
                         "From ContribuyenteEntity as c where c.id.versionId =:versionId and c.razonSocial like :filterText",
                         sort,
-                        Parameters.with("versionId", version.id).and("filterText", "%" + filterText.toUpperCase())
+                        parameters
                 )
                 .range(pageBean.getOffset(), pageBean.getOffset() + pageBean.getLimit() - 1);
 
-        long count = query.count();
+        return toPageModel(query, pageBean, countMode, "SELECT 1 FROM contribuyente WHERE version_id = :versionId AND razon_social LIKE :filterText", parameters.map());
+    }
+
+    /**
+     * @param boundedCountSql native query selecting the same rows as 'query', used to count them up to 'searchpe.search.count-threshold'
+     */
+    private PageModel<ContribuyenteEntity> toPageModel(PanacheQuery<ContribuyenteEntity> query, PageBean pageBean, CountMode countMode, String boundedCountSql, Map<String, Object> parameters) {
         List<ContribuyenteEntity> list = query.list();
-        return new PageModel<>(pageBean, count, list);
+
+        switch (countMode) {
+            case NONE:
+                return new PageModel<>(pageBean, null, false, list);
+            case APPROXIMATE:
+                // Stops scanning once the threshold is reached, unlike count(*) over the whole version
+                Query countQuery = getEntityManager().createNativeQuery("SELECT count(*) FROM (" + boundedCountSql + " LIMIT :countThreshold) AS t");
+                parameters.forEach(countQuery::setParameter);
+                countQuery.setParameter("countThreshold", countThreshold);
+
+                long count = ((Number) countQuery.getSingleResult()).longValue();
+                return new PageModel<>(pageBean, count, count < countThreshold, list);
+            case EXACT:
+                return new PageModel<>(pageBean, query.count(), true, list);
+            default:
+                throw new IllegalStateException("Unsupported count mode " + countMode);
+        }
     }
 
 }
@@ -17,12 +17,16 @@
 package io.github.project.openubl.searchpe.models.jpa.entity;
 
 import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import org.hibernate.annotations.Type;
+import org.hibernate.search.engine.backend.types.Projectable;
+import org.hibernate.search.engine.backend.types.Searchable;
 import org.hibernate.search.engine.backend.types.Sortable;
 import org.hibernate.search.mapper.pojo.bridge.mapping.annotation.IdentifierBridgeRef;
 import org.hibernate.search.mapper.pojo.mapping.definition.annotation.*;
 
 import javax.json.bind.annotation.JsonbTransient;
 import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.EmbeddedId;
 import javax.persistence.Entity;
 import javax.persistence.Table;
@@ -40,53 +44,76 @@ public class ContribuyenteEntity extends PanacheEntityBase {
     public ContribuyenteId id;
 
     @Column(name = "ruc", insertable = false, updatable = false)
+    @Type(type = "io.github.project.openubl.searchpe.models.jpa.entity.RucType")
     public String ruc;
 
-    @FullTextField(analyzer = "razonSocialAnalyser")
+    @FullTextField(analyzer = "razonSocialAnalyser", projectable = Projectable.YES)
     @KeywordField(name = "razonSocial_sort", sortable = Sortable.YES, normalizer = "razonSocialSortNormalizer")
     @NotNull
     @Column(name = "razon_social")
     public String razonSocial;
 
+    @KeywordField(searchable = Searchable.NO, projectable = Projectable.YES)
+    @Convert(converter = DictionaryConverter.EstadoContribuyenteConverter.class)
     @Column(name = "estado_contribuyente")
     public String estadoContribuyente;
 
+    @KeywordField(searchable = Searchable.NO, projectable = Projectable.YES)
+    @Convert(converter = DictionaryConverter.CondicionDomicilioConverter.class)
     @Column(name = "condicion_domicilio")
     public String condicionDomicilio;
 
+    @KeywordField(searchable = Searchable.NO, projectable = Projectable.YES)
+    @Convert(converter = DictionaryConverter.UbigeoConverter.class)
     @Column(name = "ubigeo")
     public String ubigeo;
 
+    @KeywordField(searchable = Searchable.NO, projectable = Projectable.YES)
+    @Convert(converter = DictionaryConverter.TipoViaConverter.class)
     @Column(name = "tipo_via")
     public String tipoVia;
 
+    @KeywordField(searchable = Searchable.NO, projectable = Projectable.YES)
     @Column(name = "nombre_via")
     public String nombreVia;
 
+    @KeywordField(searchable = Searchable.NO, projectable = Projectable.YES)
     @Column(name = "codigo_zona")
     public String codigoZona;
 
+    @KeywordField(searchable = Searchable.NO, projectable = Projectable.YES)
+    @Convert(converter = DictionaryConverter.TipoZonaConverter.class)
     @Column(name = "tipo_zona")
     public String tipoZona;
 
+    @KeywordField(searchable = Searchable.NO, projectable = Projectable.YES)
     @Column(name = "numero")
     public String numero;
 
+    @KeywordField(searchable = Searchable.NO, projectable = Projectable.YES)
     @Column(name = "interior")
     public String interior;
 
+    @KeywordField(searchable = Searchable.NO, projectable = Projectable.YES)
     @Column(name = "lote")
     public String lote;
 
+    @KeywordField(searchable = Searchable.NO, projectable = Projectable.YES)
     @Column(name = "departamento")
     public String departamento;
 
+    @KeywordField(searchable = Searchable.NO, projectable = Projectable.YES)
     @Column(name = "manzana")
     public String manzana;
 
+    @KeywordField(searchable = Searchable.NO, projectable = Projectable.YES)
     @Column(name = "kilometro")
     public String kilometro;
 
+    @JsonbTransient
+    @Column(name = "row_hash")
+    public Long rowHash;
+
     public static final class Builder {
         public ContribuyenteId id;
         public String razonSocial;
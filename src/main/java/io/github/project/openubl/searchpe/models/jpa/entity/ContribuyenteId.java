@@ -16,7 +16,11 @@
  */
 package io.github.project.openubl.searchpe.models.jpa.entity;
 
+import org.hibernate.annotations.Type;
+import org.hibernate.search.engine.backend.types.Projectable;
+import org.hibernate.search.engine.backend.types.Sortable;
 import org.hibernate.search.mapper.pojo.mapping.definition.annotation.GenericField;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.KeywordField;
 
 import javax.persistence.Column;
 import javax.persistence.Embeddable;
@@ -33,9 +37,11 @@ public class ContribuyenteId implements Serializable {
     @NotNull
     public Long versionId;
 
+    @KeywordField(name = "ruc", sortable = Sortable.YES, projectable = Projectable.YES)
     @Size(min = 11, max = 11)
     @NotNull
     @Column(name = "ruc")
+    @Type(type = "io.github.project.openubl.searchpe.models.jpa.entity.RucType")
     public String ruc;
 
     public ContribuyenteId() {
@@ -29,8 +29,9 @@ public class ContribuyenteIdBridge implements IdentifierBridge<ContribuyenteId>
 
     @Override
     public ContribuyenteId fromDocumentIdentifier(String documentIdentifier, IdentifierBridgeFromDocumentIdentifierContext context) {
-        String[] split = documentIdentifier.split("/");
-        return new ContribuyenteId(Long.parseLong(split[0]), split[1]);
+        // Called for every search hit
+        int separator = documentIdentifier.indexOf('/');
+        return new ContribuyenteId(Long.parseLong(documentIdentifier, 0, separator, 10), documentIdentifier.substring(separator + 1));
     }
 
 }
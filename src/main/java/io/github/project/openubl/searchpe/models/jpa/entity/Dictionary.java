@@ -0,0 +1,41 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.models.jpa.entity;
+
+/**
+ * Columns of CONTRIBUYENTE stored as the code of their value in the DICTIONARY table.
+ */
+public enum Dictionary {
+    ESTADO_CONTRIBUYENTE("estado_contribuyente"),
+    CONDICION_DOMICILIO("condicion_domicilio"),
+    UBIGEO("ubigeo"),
+    TIPO_VIA("tipo_via"),
+    TIPO_ZONA("tipo_zona");
+
+    private final String columnName;
+
+    Dictionary(String columnName) {
+        this.columnName = columnName;
+    }
+
+    /**
+     * @return name of the column, also the name of its dictionary
+     */
+    public String getColumnName() {
+        return columnName;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.models.jpa.entity;
+
+import io.github.project.openubl.searchpe.managers.DictionaryManager;
+import io.quarkus.arc.Arc;
+
+import javax.persistence.AttributeConverter;
+
+/**
+ * Maps a dictionary column to the value of its code, so entities and their JSON keep the value.
+ */
+public abstract class DictionaryConverter implements AttributeConverter<String, Short> {
+
+    private final Dictionary dictionary;
+
+    // Client proxy of the bean, looked up on first use as converters are created by Hibernate
+    private volatile DictionaryManager dictionaryManager;
+
+    protected DictionaryConverter(Dictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public Short convertToDatabaseColumn(String value) {
+        return value != null ? getDictionaryManager().encode(dictionary, value) : null;
+    }
+
+    @Override
+    public String convertToEntityAttribute(Short code) {
+        return code != null ? getDictionaryManager().decode(dictionary, code) : null;
+    }
+
+    private DictionaryManager getDictionaryManager() {
+        DictionaryManager result = dictionaryManager;
+        if (result == null) {
+            result = Arc.container().instance(DictionaryManager.class).get();
+            dictionaryManager = result;
+        }
+        return result;
+    }
+
+    public static class EstadoContribuyenteConverter extends DictionaryConverter {
+        public EstadoContribuyenteConverter() {
+            super(Dictionary.ESTADO_CONTRIBUYENTE);
+        }
+    }
+
+    public static class CondicionDomicilioConverter extends DictionaryConverter {
+        public CondicionDomicilioConverter() {
+            super(Dictionary.CONDICION_DOMICILIO);
+        }
+    }
+
+    public static class UbigeoConverter extends DictionaryConverter {
+        public UbigeoConverter() {
+            super(Dictionary.UBIGEO);
+        }
+    }
+
+    public static class TipoViaConverter extends DictionaryConverter {
+        public TipoViaConverter() {
+            super(Dictionary.TIPO_VIA);
+        }
+    }
+
+    public static class TipoZonaConverter extends DictionaryConverter {
+        public TipoZonaConverter() {
+            super(Dictionary.TIPO_ZONA);
+        }
+    }
+
+}
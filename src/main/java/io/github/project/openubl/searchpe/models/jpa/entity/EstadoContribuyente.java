@@ -18,7 +18,6 @@ package io.github.project.openubl.searchpe.models.jpa.entity;
 
 import io.quarkus.runtime.annotations.RegisterForReflection;
 
-import java.util.Arrays;
 import java.util.Optional;
 
 @RegisterForReflection
@@ -29,7 +28,12 @@ public enum EstadoContribuyente {
     BAJA_DEFINITIVA;
 
     public static Optional<EstadoContribuyente> fromString(String value) {
-        String valueToCheck = value.toUpperCase().replaceAll(" ", "_");
-        return Arrays.stream(EstadoContribuyente.values()).filter(f -> f.toString().equals(valueToCheck)).findFirst();
+        String valueToCheck = value.toUpperCase().replace(' ', '_');
+        for (EstadoContribuyente estado : values()) {
+            if (estado.name().equals(valueToCheck)) {
+                return Optional.of(estado);
+            }
+        }
+        return Optional.empty();
     }
 }
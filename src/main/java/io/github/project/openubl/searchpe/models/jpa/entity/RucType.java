@@ -0,0 +1,117 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.models.jpa.entity;
+
+import io.github.project.openubl.searchpe.models.RucStorage;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.usertype.UserType;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Objects;
+
+/**
+ * Binds the RUC, a String in the entities, with the type of the column selected by 'searchpe.storage.ruc',
+ * so queries comparing it keep using the primary key whatever the storage.
+ */
+public class RucType implements UserType {
+
+    private volatile RucStorage rucStorage;
+
+    @Override
+    public int[] sqlTypes() {
+        return new int[]{Types.VARCHAR};
+    }
+
+    @Override
+    public Class<?> returnedClass() {
+        return String.class;
+    }
+
+    @Override
+    public boolean equals(Object x, Object y) {
+        return Objects.equals(x, y);
+    }
+
+    @Override
+    public int hashCode(Object x) {
+        return Objects.hashCode(x);
+    }
+
+    @Override
+    public Object nullSafeGet(ResultSet rs, String[] names, SharedSessionContractImplementor session, Object owner) throws SQLException {
+        // The driver converts a BIGINT to its digits
+        return rs.getString(names[0]);
+    }
+
+    @Override
+    public void nullSafeSet(PreparedStatement st, Object value, int index, SharedSessionContractImplementor session) throws SQLException {
+        boolean bigint = getRucStorage() == RucStorage.BIGINT;
+        if (value == null) {
+            st.setNull(index, bigint ? Types.BIGINT : Types.VARCHAR);
+        } else if (bigint) {
+            st.setLong(index, Long.parseLong((String) value));
+        } else {
+            st.setString(index, (String) value);
+        }
+    }
+
+    @Override
+    public Object deepCopy(Object value) {
+        return value;
+    }
+
+    @Override
+    public boolean isMutable() {
+        return false;
+    }
+
+    @Override
+    public Serializable disassemble(Object value) {
+        return (Serializable) value;
+    }
+
+    @Override
+    public Object assemble(Serializable cached, Object owner) {
+        return cached;
+    }
+
+    @Override
+    public Object replace(Object original, Object target, Object owner) {
+        return original;
+    }
+
+    /**
+     * Read once the configuration is available, types are created while the metamodel is built
+     */
+    private RucStorage getRucStorage() {
+        RucStorage result = rucStorage;
+        if (result == null) {
+            result = ConfigProvider.getConfig()
+                    .getOptionalValue("searchpe.storage.ruc", String.class)
+                    .map(RucStorage::valueOf)
+                    .orElse(RucStorage.VARCHAR);
+            rucStorage = result;
+        }
+        return result;
+    }
+
+}
@@ -23,5 +23,6 @@ public enum Status {
     IMPORTING,
     ERROR,
     COMPLETED,
+    UNCHANGED,
     DELETING
 }
@@ -19,6 +19,7 @@ package io.github.project.openubl.searchpe.models.jpa.entity;
 import io.quarkus.hibernate.orm.panache.PanacheEntity;
 
 import javax.json.bind.annotation.JsonbDateFormat;
+import javax.json.bind.annotation.JsonbTransient;
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import java.util.Date;
@@ -26,6 +27,7 @@ import java.util.Objects;
 
 @Entity
 @Table(name = "version")
+@EntityListeners(VersionEntityListener.class)
 public class VersionEntity extends PanacheEntity {
 
     @JsonbDateFormat(value = "yyyy-MM-dd'T'HH:mm:ss'Z'")
@@ -49,6 +51,22 @@ public class VersionEntity extends PanacheEntity {
     @Column(name = "records")
     public int records;
 
+    @Column(name = "etag")
+    public String etag;
+
+    @Column(name = "last_modified")
+    public String lastModified;
+
+    @Column(name = "sha256")
+    public String sha256;
+
+    @Column(name = "downloaded_bytes")
+    public Long downloadedBytes;
+
+    @JsonbTransient
+    @Column(name = "source_file")
+    public String sourceFile;
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.models.jpa.entity;
+
+import io.github.project.openubl.searchpe.managers.ActiveVersionManager;
+import io.quarkus.arc.Arc;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Invalidates the in-memory active version when a version changes on this node.
+ */
+public class VersionEntityListener {
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    void onChange(VersionEntity version) {
+        Arc.container().instance(ActiveVersionManager.class).get().invalidate(version);
+    }
+
+}
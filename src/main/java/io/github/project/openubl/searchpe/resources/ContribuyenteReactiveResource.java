@@ -0,0 +1,332 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.resources;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import io.github.project.openubl.searchpe.managers.ActiveVersionManager;
+import io.github.project.openubl.searchpe.managers.ContribuyenteCacheManager;
+import io.github.project.openubl.searchpe.managers.ContribuyenteReactiveManager;
+import io.github.project.openubl.searchpe.managers.IndexManager;
+import io.github.project.openubl.searchpe.managers.RucIndexManager;
+import io.github.project.openubl.searchpe.models.ContribuyenteRepresentation;
+import io.github.project.openubl.searchpe.models.CountMode;
+import io.github.project.openubl.searchpe.models.PageBean;
+import io.github.project.openubl.searchpe.models.PageRepresentation;
+import io.github.project.openubl.searchpe.models.RucStorage;
+import io.github.project.openubl.searchpe.models.SortBean;
+import io.github.project.openubl.searchpe.models.jpa.ContribuyenteRepository;
+import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteEntity;
+import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteId;
+import io.github.project.openubl.searchpe.models.jpa.entity.VersionEntity;
+import io.github.project.openubl.searchpe.utils.ResourceUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.smallrye.mutiny.Uni;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.*;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Same lookup and search as {@link ContribuyenteResource}, but a request does not hold a worker thread
+ * nor a JDBC connection while PostgreSQL or Elasticsearch answer: the method returns as soon as the
+ * requests are sent and the response is written once they complete.
+ */
+@ApplicationScoped
+@Path("/reactive/contribuyentes")
+public class ContribuyenteReactiveResource {
+
+    @Inject
+    ActiveVersionManager activeVersionManager;
+
+    @Inject
+    IndexManager indexManager;
+
+    @Inject
+    ContribuyenteCacheManager contribuyenteCacheManager;
+
+    @Inject
+    RucIndexManager rucIndexManager;
+
+    @Inject
+    ContribuyenteReactiveManager contribuyenteReactiveManager;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "searchpe.storage.ruc", defaultValue = "VARCHAR")
+    RucStorage rucStorage;
+
+    @ConfigProperty(name = "searchpe.search.count-threshold", defaultValue = "10000")
+    Integer countThreshold;
+
+    @Operation(summary = "Search contribuyentes", description = "Get contribuyentes in a page without blocking")
+    @GET
+    @Path("/")
+    @Produces("application/json")
+    public Uni<PageRepresentation<ContribuyenteRepresentation>> getContribuyentes(
+            @QueryParam("filterText") String filterText,
+            @QueryParam("offset") @DefaultValue("0") Integer offset,
+            @QueryParam("limit") @DefaultValue("10") Integer limit,
+            @QueryParam("sort_by") @DefaultValue("name") List<String> sortBy,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("count") @DefaultValue("exact") String count
+    ) {
+        return timed("getContribuyentes", "reactive-search", () -> searchContribuyentes(filterText, offset, limit, sortBy, cursor, count));
+    }
+
+    @Operation(summary = "Get contribuyente by RUC", description = "Get contribuyentes by RUC without blocking")
+    @GET
+    @Path("/{ruc}")
+    @Produces("application/json")
+    public Uni<ContribuyenteEntity> getContribuyente(@PathParam("ruc") String ruc) {
+        return timed("getContribuyente", "reactive-get", () -> findContribuyente(ruc));
+    }
+
+    /**
+     * Time the request until the Uni terminates, once the response is ready to be written.
+     */
+    private <T> Uni<T> timed(String method, String endpoint, Supplier<Uni<? extends T>> request) {
+        Timer.Sample sample = Timer.start(registry);
+        return Uni.createFrom().<T>deferred(request)
+                .onTermination().invoke((item, failure, cancelled) -> sample.stop(RequestTimers.requestTimer(registry, ContribuyenteReactiveResource.class, method, endpoint, failure)));
+    }
+
+    private Uni<PageRepresentation<ContribuyenteRepresentation>> searchContribuyentes(
+            String filterText,
+            Integer offset,
+            Integer limit,
+            List<String> sortBy,
+            String cursor,
+            String count
+    ) {
+        CountMode countMode = CountMode.fromString(count).orElseThrow(() -> new BadRequestException("Unsupported count " + count));
+
+        Optional<VersionEntity> versionOptional = activeVersionManager.getActiveVersion();
+        if (versionOptional.isEmpty()) {
+            PageRepresentation<ContribuyenteRepresentation> result = new PageRepresentation<>();
+
+            PageRepresentation.Meta meta = new PageRepresentation.Meta();
+            meta.setOffset(offset);
+            meta.setLimit(limit);
+            if (countMode != CountMode.NONE) {
+                meta.setCount(0L);
+                meta.setCountExact(true);
+            }
+
+            result.setMeta(meta);
+            result.setData(Collections.emptyList());
+
+            return Uni.createFrom().item(result);
+        }
+        VersionEntity version = versionOptional.get();
+
+        PageBean pageBean = ResourceUtils.getPageBean(offset, limit);
+        List<SortBean> sortBeans = ResourceUtils.getSortBeans(sortBy, ContribuyenteRepository.SORT_BY_FIELDS);
+
+        JsonArray searchAfter = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            if (pageBean.getOffset() > 0) {
+                throw new BadRequestException("offset can not be used together with cursor");
+            }
+            try {
+                searchAfter = ResourceUtils.decodeCursor(cursor, sortBeans);
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException(e.getMessage());
+            }
+        }
+
+        // Same request Hibernate Search sends for ContribuyenteResource, so cursors work on both
+        JsonObject body = new JsonObject();
+        body.addProperty("from", pageBean.getOffset());
+        body.addProperty("size", pageBean.getLimit());
+        // Documents indexed by a previous release lack the projected fields, their rows are read from the database
+        boolean projectable = indexManager.isReadIndexProjectable();
+        if (projectable) {
+            JsonArray source = new JsonArray();
+            Arrays.stream(ContribuyenteRepresentation.INDEX_FIELDS).forEach(source::add);
+            body.add("_source", source);
+        } else {
+            body.addProperty("_source", false);
+        }
+        body.add("query", buildQuery(version, filterText));
+        body.add("sort", buildSort(sortBeans));
+        if (searchAfter != null) {
+            body.add("search_after", searchAfter);
+        }
+
+        // Elasticsearch stops counting hits once 'track_total_hits' is reached
+        if (countMode == CountMode.NONE) {
+            body.addProperty("track_total_hits", false);
+        } else if (countMode == CountMode.APPROXIMATE) {
+            body.addProperty("track_total_hits", countThreshold);
+        } else {
+            body.addProperty("track_total_hits", true);
+        }
+
+        return contribuyenteReactiveManager.search(body).onItem().transformToUni(response -> {
+            JsonObject hits = response.getAsJsonObject("hits");
+            JsonArray hitList = hits.getAsJsonArray("hits");
+
+            PageRepresentation.Meta meta = new PageRepresentation.Meta();
+            meta.setOffset(pageBean.getOffset());
+            meta.setLimit(pageBean.getLimit());
+            if (countMode != CountMode.NONE) {
+                JsonObject total = hits.getAsJsonObject("total");
+                meta.setCount(total.get("value").getAsLong());
+                meta.setCountExact("eq".equals(total.get("relation").getAsString()));
+            }
+
+            // A full page may be followed by more hits, continue after the sort values of its last hit
+            if (hitList.size() > 0 && hitList.size() == pageBean.getLimit()) {
+                meta.setCursor(ResourceUtils.encodeCursor(sortBeans, hitList.get(hitList.size() - 1).getAsJsonObject().getAsJsonArray("sort")));
+            }
+
+            Uni<List<ContribuyenteRepresentation>> contribuyentes = projectable
+                    ? Uni.createFrom().item(readHits(hitList))
+                    : loadHits(version, hitList);
+            return contribuyentes.onItem().transform(data -> {
+                PageRepresentation<ContribuyenteRepresentation> result = new PageRepresentation<>();
+                result.setMeta(meta);
+                result.setData(data);
+                return result;
+            });
+        });
+    }
+
+    private Uni<ContribuyenteEntity> findContribuyente(String ruc) {
+        if (!rucStorage.accepts(ruc)) {
+            throw new NotFoundException();
+        }
+
+        VersionEntity version = activeVersionManager.getActiveVersion().orElseThrow(NotFoundException::new);
+        return contribuyenteCacheManager
+                .getAsync(new ContribuyenteId(version.id, ruc), id -> rucIndexManager.getIndex(version)
+                        .filter(index -> rucIndexManager.isIndexed(id.ruc))
+                        .map(index -> Uni.createFrom().item(rucIndexManager.find(index, id)))
+                        .orElseGet(() -> contribuyenteReactiveManager.findById(id))
+                )
+                .onItem().transform(contribuyente -> contribuyente.orElseThrow(NotFoundException::new));
+    }
+
+    private JsonObject buildQuery(VersionEntity version, String filterText) {
+        JsonArray filter = new JsonArray();
+        // The version filter is not needed when the read index only contains the active version
+        if (!indexManager.isVersionIndexActive(version.id)) {
+            JsonObject versionId = new JsonObject();
+            versionId.addProperty("embeddedId.versionId", version.id);
+            JsonObject term = new JsonObject();
+            term.add("term", versionId);
+            filter.add(term);
+        }
+
+        JsonArray must = new JsonArray();
+        if (filterText != null && !filterText.trim().isEmpty()) {
+            JsonObject razonSocial = new JsonObject();
+            razonSocial.addProperty("razonSocial", filterText);
+            JsonObject match = new JsonObject();
+            match.add("match", razonSocial);
+            must.add(match);
+        }
+
+        JsonObject bool = new JsonObject();
+        bool.add("filter", filter);
+        bool.add("must", must);
+        JsonObject query = new JsonObject();
+        query.add("bool", bool);
+        return query;
+    }
+
+    private JsonArray buildSort(List<SortBean> sortBeans) {
+        JsonArray sort = new JsonArray();
+        if (sortBeans.isEmpty()) {
+            sort.add(sortField("_score", false));
+        } else {
+            sortBeans.forEach(f -> sort.add(sortField(f.getFieldName() + "_sort", f.isAsc())));
+        }
+
+        // RUCs are unique within a version, so hits have a total order that a cursor can resume from
+        sort.add(sortField("embeddedId.ruc", true));
+        return sort;
+    }
+
+    /**
+     * Hits are built from the document alone, no row is read from the database
+     */
+    private List<ContribuyenteRepresentation> readHits(JsonArray hitList) {
+        List<ContribuyenteRepresentation> result = new ArrayList<>();
+        for (JsonElement hit : hitList) {
+            JsonObject document = hit.getAsJsonObject().getAsJsonObject("_source");
+            List<String> values = Arrays.stream(ContribuyenteRepresentation.INDEX_FIELDS)
+                    .map(field -> getSourceValue(document, field))
+                    .collect(Collectors.toList());
+            result.add(ContribuyenteRepresentation.fromValues(values));
+        }
+        return result;
+    }
+
+    private Uni<List<ContribuyenteRepresentation>> loadHits(VersionEntity version, JsonArray hitList) {
+        List<String> rucs = new ArrayList<>();
+        for (JsonElement hit : hitList) {
+            String id = hit.getAsJsonObject().get("_id").getAsString();
+            rucs.add(id.substring(id.indexOf('/') + 1));
+        }
+        if (rucs.isEmpty()) {
+            return Uni.createFrom().item(Collections.emptyList());
+        }
+
+        return contribuyenteReactiveManager.findByRucs(version.id, rucs).onItem().transform(contribuyentes -> {
+            Map<String, ContribuyenteEntity> byRuc = contribuyentes.stream().collect(Collectors.toMap(f -> f.id.ruc, Function.identity()));
+            return rucs.stream()
+                    .map(byRuc::get)
+                    .filter(Objects::nonNull)
+                    .map(ContribuyenteRepresentation::fromEntity)
+                    .collect(Collectors.toList());
+        });
+    }
+
+    /**
+     * @param field dotted path of the field, null values are left out of the source by Hibernate Search
+     */
+    private static String getSourceValue(JsonObject document, String field) {
+        JsonElement element = document;
+        for (String name : field.split("\\.")) {
+            if (element == null || !element.isJsonObject()) {
+                return null;
+            }
+            element = element.getAsJsonObject().get(name);
+        }
+        return element != null && !element.isJsonNull() ? element.getAsString() : null;
+    }
+
+    private static JsonObject sortField(String field, boolean asc) {
+        JsonObject order = new JsonObject();
+        order.addProperty("order", asc ? "asc" : "desc");
+        JsonObject sort = new JsonObject();
+        sort.add(field, order);
+        return sort;
+    }
+
+}
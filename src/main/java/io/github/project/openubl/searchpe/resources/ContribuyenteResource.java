@@ -16,23 +16,39 @@
  */
 package io.github.project.openubl.searchpe.resources;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import io.github.project.openubl.searchpe.managers.ActiveVersionManager;
+import io.github.project.openubl.searchpe.managers.ContribuyenteCacheManager;
+import io.github.project.openubl.searchpe.managers.ContribuyenteExportManager;
+import io.github.project.openubl.searchpe.managers.IndexManager;
+import io.github.project.openubl.searchpe.managers.RucIndexManager;
+import io.github.project.openubl.searchpe.models.ContribuyenteRepresentation;
+import io.github.project.openubl.searchpe.models.CountMode;
 import io.github.project.openubl.searchpe.models.PageBean;
 import io.github.project.openubl.searchpe.models.PageRepresentation;
+import io.github.project.openubl.searchpe.models.RucStorage;
 import io.github.project.openubl.searchpe.models.SortBean;
 import io.github.project.openubl.searchpe.models.jpa.ContribuyenteRepository;
-import io.github.project.openubl.searchpe.models.jpa.VersionRepository;
 import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteEntity;
 import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteId;
+import io.github.project.openubl.searchpe.models.jpa.entity.EstadoContribuyente;
 import io.github.project.openubl.searchpe.models.jpa.entity.VersionEntity;
 import io.github.project.openubl.searchpe.utils.ResourceUtils;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.hibernate.search.backend.elasticsearch.ElasticsearchExtension;
+import org.hibernate.search.backend.elasticsearch.search.query.dsl.ElasticsearchSearchQueryOptionsStep;
+import org.hibernate.search.engine.search.predicate.dsl.BooleanPredicateClausesStep;
+import org.hibernate.search.engine.search.projection.SearchProjection;
 import org.hibernate.search.engine.search.query.SearchResult;
-import org.hibernate.search.engine.search.query.dsl.SearchQueryOptionsStep;
 import org.hibernate.search.engine.search.sort.SearchSort;
 import org.hibernate.search.engine.search.sort.dsl.CompositeSortComponentsStep;
 import org.hibernate.search.engine.search.sort.dsl.SortOrder;
 import org.hibernate.search.mapper.orm.scope.SearchScope;
-import org.hibernate.search.mapper.orm.search.loading.dsl.SearchLoadingOptionsStep;
 import org.hibernate.search.mapper.orm.session.SearchSession;
 
 import javax.enterprise.context.ApplicationScoped;
@@ -40,9 +56,11 @@ import javax.inject.Inject;
 import javax.transaction.Transactional;
 import javax.ws.rs.*;
 import javax.ws.rs.core.Response;
-import java.util.Collections;
-import java.util.List;
-import java.util.Optional;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Transactional
 @ApplicationScoped
@@ -50,7 +68,7 @@ import java.util.Optional;
 public class ContribuyenteResource {
 
     @Inject
-    VersionRepository versionRepository;
+    ActiveVersionManager activeVersionManager;
 
     @Inject
     ContribuyenteRepository contribuyenteRepository;
@@ -58,24 +76,56 @@ public class ContribuyenteResource {
     @Inject
     SearchSession searchSession;
 
+    @Inject
+    IndexManager indexManager;
+
+    @Inject
+    ContribuyenteCacheManager contribuyenteCacheManager;
+
+    @Inject
+    ContribuyenteExportManager contribuyenteExportManager;
+
+    @Inject
+    RucIndexManager rucIndexManager;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "searchpe.storage.ruc", defaultValue = "VARCHAR")
+    RucStorage rucStorage;
+
+    @ConfigProperty(name = "searchpe.batch.max-rucs", defaultValue = "1000")
+    Integer batchMaxRucs;
+
+    @ConfigProperty(name = "searchpe.search.count-threshold", defaultValue = "10000")
+    Integer countThreshold;
+
+    @Timed(value = "searchpe.contribuyentes.requests", extraTags = {"endpoint", "search"}, histogram = true)
     @Operation(summary = "Search contribuyentes", description = "Get contribuyentes in a page")
     @GET
     @Path("/")
     @Produces("application/json")
-    public PageRepresentation<ContribuyenteEntity> getContribuyentes(
+    public PageRepresentation<ContribuyenteRepresentation> getContribuyentes(
             @QueryParam("filterText") String filterText,
             @QueryParam("offset") @DefaultValue("0") Integer offset,
             @QueryParam("limit") @DefaultValue("10") Integer limit,
-            @QueryParam("sort_by") @DefaultValue("name") List<String> sortBy
+            @QueryParam("sort_by") @DefaultValue("name") List<String> sortBy,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("count") @DefaultValue("exact") String count
     ) {
-        Optional<VersionEntity> versionOptional = versionRepository.findActive();
+        CountMode countMode = CountMode.fromString(count).orElseThrow(() -> new BadRequestException("Unsupported count " + count));
+
+        Optional<VersionEntity> versionOptional = activeVersionManager.getActiveVersion();
         if (versionOptional.isEmpty()) {
-            PageRepresentation<ContribuyenteEntity> result = new PageRepresentation<>();
+            PageRepresentation<ContribuyenteRepresentation> result = new PageRepresentation<>();
 
             PageRepresentation.Meta meta = new PageRepresentation.Meta();
             meta.setOffset(offset);
             meta.setLimit(limit);
-            meta.setCount(0L);
+            if (countMode != CountMode.NONE) {
+                meta.setCount(0L);
+                meta.setCountExact(true);
+            }
 
             result.setMeta(meta);
             result.setData(Collections.emptyList());
@@ -87,56 +137,214 @@ public class ContribuyenteResource {
         PageBean pageBean = ResourceUtils.getPageBean(offset, limit);
         List<SortBean> sortBeans = ResourceUtils.getSortBeans(sortBy, ContribuyenteRepository.SORT_BY_FIELDS);
 
-        SearchSort searchSort = null;
-        if (!sortBeans.isEmpty()) {
-            SearchScope<ContribuyenteEntity> searchScope = searchSession.scope(ContribuyenteEntity.class);
+        JsonArray searchAfter = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            if (pageBean.getOffset() > 0) {
+                throw new BadRequestException("offset can not be used together with cursor");
+            }
+            try {
+                searchAfter = ResourceUtils.decodeCursor(cursor, sortBeans);
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException(e.getMessage());
+            }
+        }
 
-            CompositeSortComponentsStep<?> compositeSortComponents = searchScope.sort().composite();
+        SearchScope<ContribuyenteEntity> searchScope = searchSession.scope(ContribuyenteEntity.class);
+        CompositeSortComponentsStep<?> compositeSortComponents = searchScope.sort().composite();
+        if (sortBeans.isEmpty()) {
+            compositeSortComponents.add(searchScope.sort().score().toSort());
+        } else {
             sortBeans.stream()
                     .map(f -> searchScope.sort()
                             .field(f.getFieldName() + "_sort")
                             .order(f.isAsc() ? SortOrder.ASC : SortOrder.DESC)
                             .toSort())
                     .forEach(compositeSortComponents::add);
-
-            searchSort = compositeSortComponents.toSort();
         }
 
-        SearchQueryOptionsStep<?, ContribuyenteEntity, SearchLoadingOptionsStep, ?, ?> searchQuery;
-        if (filterText != null && !filterText.trim().isEmpty()) {
-            searchQuery = searchSession.search(ContribuyenteEntity.class)
-                    .where(f -> f.bool()
-                            .must(f.match().field("embeddedId.versionId").matching(version.id))
-                            .must(f.match().fields("razonSocial").matching(filterText))
-                    );
-        } else {
-            searchQuery = searchSession.search(ContribuyenteEntity.class)
-                    .where(f -> f.match().field("embeddedId.versionId").matching(version.id));
-        }
+        // RUCs are unique within a version, so hits have a total order that a cursor can resume from
+        compositeSortComponents.add(searchScope.sort().field("embeddedId.ruc").toSort());
+        SearchSort searchSort = compositeSortComponents.toSort();
+
+        // The version filter is not needed when the read index only contains the active version
+        boolean filterByVersion = !indexManager.isVersionIndexActive(version.id);
+
+        // Documents indexed by a previous release lack the projected fields
+        boolean projectable = indexManager.isReadIndexProjectable();
+
+        JsonArray finalSearchAfter = searchAfter;
+        ElasticsearchSearchQueryOptionsStep<ContribuyenteHit, ?> searchQuery = searchSession.search(ContribuyenteEntity.class)
+                .extension(ElasticsearchExtension.get())
+                .select(f -> {
+                    if (!projectable) {
+                        return f.composite((ContribuyenteEntity entity, JsonObject hit) -> new ContribuyenteHit(ContribuyenteRepresentation.fromEntity(entity), hit), f.entity(), f.jsonHit());
+                    }
 
-        if (searchSort != null) {
-            searchQuery = searchQuery.sort(searchSort);
+                    // Hits are built from the document alone, no entity is loaded from the database
+                    SearchProjection<?>[] fields = Arrays.stream(ContribuyenteRepresentation.INDEX_FIELDS)
+                            .map(field -> f.field(field, String.class).toProjection())
+                            .toArray(SearchProjection<?>[]::new);
+                    return f.composite(ContribuyenteHit::new, f.composite(ContribuyenteRepresentation::fromValues, fields), f.jsonHit());
+                })
+                .where(f -> {
+                    BooleanPredicateClausesStep<?> predicate = f.bool().must(f.matchAll());
+                    if (filterByVersion) {
+                        predicate = predicate.must(f.match().field("embeddedId.versionId").matching(version.id));
+                    }
+                    if (filterText != null && !filterText.trim().isEmpty()) {
+                        predicate = predicate.must(f.match().fields("razonSocial").matching(filterText));
+                    }
+                    return predicate;
+                })
+                .sort(searchSort)
+                .requestTransformer(context -> {
+                    if (finalSearchAfter != null) {
+                        context.body().add("search_after", finalSearchAfter);
+                    }
+                });
+
+        // Elasticsearch stops counting hits once 'track_total_hits' is reached
+        if (countMode == CountMode.NONE) {
+            searchQuery = searchQuery.totalHitCountThreshold(0);
+        } else if (countMode == CountMode.APPROXIMATE) {
+            searchQuery = searchQuery.totalHitCountThreshold(countThreshold);
         }
-        SearchResult<ContribuyenteEntity> searchResult = searchQuery.fetch(offset, limit);
+        SearchResult<ContribuyenteHit> searchResult = searchQuery.fetch(pageBean.getOffset(), pageBean.getLimit());
+
+        List<ContribuyenteHit> hits = searchResult.hits();
 
         PageRepresentation.Meta meta = new PageRepresentation.Meta();
         meta.setOffset(pageBean.getOffset());
         meta.setLimit(pageBean.getLimit());
-        meta.setCount(searchResult.total().hitCount());
+        if (countMode == CountMode.EXACT) {
+            meta.setCount(searchResult.total().hitCount());
+            meta.setCountExact(true);
+        } else if (countMode == CountMode.APPROXIMATE) {
+            meta.setCount(searchResult.total().hitCountLowerBound());
+            meta.setCountExact(searchResult.total().isHitCountExact());
+        }
 
-        PageRepresentation<ContribuyenteEntity> result = new PageRepresentation<>();
+        // A full page may be followed by more hits, continue after the sort values of its last hit
+        if (!hits.isEmpty() && hits.size() == pageBean.getLimit()) {
+            meta.setCursor(ResourceUtils.encodeCursor(sortBeans, hits.get(hits.size() - 1).hit.getAsJsonArray("sort")));
+        }
+
+        PageRepresentation<ContribuyenteRepresentation> result = new PageRepresentation<>();
         result.setMeta(meta);
-        result.setData(searchResult.hits());
+        result.setData(hits.stream().map(f -> f.contribuyente).collect(Collectors.toList()));
 
         return result;
     }
 
+    @Timed(value = "searchpe.contribuyentes.requests", extraTags = {"endpoint", "get"}, histogram = true)
     @Operation(summary = "Get contribuyente by RUC", description = "Get contribuyentes by RUC")
     @GET
     @Path("/{ruc}")
     @Produces("application/json")
     public ContribuyenteEntity getContribuyente(@PathParam("ruc") String ruc) {
-        VersionEntity version = versionRepository.findActive().orElseThrow(NotFoundException::new);
-        return contribuyenteRepository.findByIdOptional(new ContribuyenteId(version.id, ruc)).orElseThrow(NotFoundException::new);
+        if (!rucStorage.accepts(ruc)) {
+            throw new NotFoundException();
+        }
+
+        VersionEntity version = activeVersionManager.getActiveVersion().orElseThrow(NotFoundException::new);
+        return contribuyenteCacheManager
+                .get(new ContribuyenteId(version.id, ruc), id -> rucIndexManager.getIndex(version)
+                        .filter(index -> rucIndexManager.isIndexed(id.ruc))
+                        .map(index -> rucIndexManager.find(index, id))
+                        .orElseGet(() -> contribuyenteRepository.findByIdOptional(id))
+                )
+                .orElseThrow(NotFoundException::new);
     }
+
+    @Timed(value = "searchpe.contribuyentes.requests", extraTags = {"endpoint", "batch"}, histogram = true)
+    @Operation(summary = "Get contribuyentes by RUCs", description = "Get several contribuyentes in a single request, RUCs not found are mapped to null")
+    @POST
+    @Path("/batch")
+    @Consumes("application/json")
+    @Produces("application/json")
+    public Map<String, ContribuyenteEntity> getContribuyentesBatch(List<String> rucs) {
+        if (rucs == null) {
+            throw new BadRequestException("A list of RUCs is required");
+        }
+        if (rucs.size() > batchMaxRucs) {
+            throw new BadRequestException("No more than " + batchMaxRucs + " RUCs are allowed");
+        }
+
+        Map<String, ContribuyenteEntity> result = new LinkedHashMap<>();
+        Optional<VersionEntity> versionOptional = activeVersionManager.getActiveVersion();
+        if (versionOptional.isEmpty()) {
+            rucs.forEach(ruc -> result.put(ruc, null));
+            return result;
+        }
+        VersionEntity version = versionOptional.get();
+
+        Set<ContribuyenteId> ids = rucs.stream()
+                .filter(rucStorage::accepts)
+                .map(ruc -> new ContribuyenteId(version.id, ruc))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        Map<ContribuyenteId, Optional<ContribuyenteEntity>> contribuyentes = contribuyenteCacheManager.getAll(version.id, ids, missingIds -> contribuyenteRepository
+                .findByRucs(version.id, missingIds.stream().map(id -> id.ruc).collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(f -> f.id, Function.identity()))
+        );
+
+        rucs.forEach(ruc -> result.put(ruc, null));
+        ids.forEach(id -> result.put(id.ruc, contribuyentes.get(id).orElse(null)));
+        return result;
+    }
+
+    @Operation(summary = "Export contribuyentes", description = "Stream all contribuyentes of the active version as NDJSON or CSV")
+    @GET
+    @Path("/export")
+    @Produces({"application/x-ndjson", "text/csv"})
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public Response exportContribuyentes(
+            @QueryParam("format") @DefaultValue("ndjson") String format,
+            @QueryParam("estado") List<String> estados,
+            @QueryParam("ubigeo") String ubigeo
+    ) {
+        ContribuyenteExportManager.Format exportFormat;
+        try {
+            exportFormat = ContribuyenteExportManager.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unsupported format " + format);
+        }
+
+        List<EstadoContribuyente> exportEstados = new ArrayList<>();
+        for (String estado : estados) {
+            exportEstados.add(EstadoContribuyente.fromString(estado).orElseThrow(() -> new BadRequestException("Unknown estado " + estado)));
+        }
+        String ubigeoPrefix = ubigeo != null && !ubigeo.trim().isEmpty() ? ubigeo.trim() : null;
+
+        VersionEntity version = activeVersionManager.getActiveVersion().orElseThrow(NotFoundException::new);
+
+        // Rows are written after this method returns, so the request is timed while they are
+        StreamingOutput output = outputStream -> {
+            Timer.Sample sample = Timer.start(registry);
+            Throwable failure = null;
+            try {
+                contribuyenteExportManager.export(version.id, exportFormat, exportEstados, ubigeoPrefix, outputStream);
+            } catch (IOException | RuntimeException e) {
+                failure = e;
+                throw e;
+            } finally {
+                sample.stop(RequestTimers.requestTimer(registry, ContribuyenteResource.class, "exportContribuyentes", "export", failure));
+            }
+        };
+        return Response.ok(output, exportFormat.getMediaType() + ";charset=UTF-8")
+                .header("Content-Disposition", "attachment; filename=\"contribuyentes-" + version.id + "." + exportFormat.name().toLowerCase() + "\"")
+                .build();
+    }
+
+    private static class ContribuyenteHit {
+        private final ContribuyenteRepresentation contribuyente;
+        private final JsonObject hit;
+
+        private ContribuyenteHit(ContribuyenteRepresentation contribuyente, JsonObject hit) {
+            this.contribuyente = contribuyente;
+            this.hit = hit;
+        }
+    }
+
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.resources;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Timer of the requests whose work goes on after the resource method returns, where {@link io.micrometer.core.annotation.Timed}
+ * would only measure building the response. Tagged like {@link io.micrometer.core.annotation.Timed} does, so they share
+ * the metric of the other endpoints.
+ */
+class RequestTimers {
+
+    static final String REQUESTS_METRIC = "searchpe.contribuyentes.requests";
+
+    private RequestTimers() {
+        // Just static methods
+    }
+
+    static Timer requestTimer(MeterRegistry registry, Class<?> resourceClass, String method, String endpoint, Throwable failure) {
+        return Timer.builder(REQUESTS_METRIC)
+                .tag("class", resourceClass.getName())
+                .tag("method", method)
+                .tag("endpoint", endpoint)
+                .tag("exception", failure != null ? failure.getClass().getSimpleName() : "none")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+}
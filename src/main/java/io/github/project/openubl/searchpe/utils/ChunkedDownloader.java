@@ -0,0 +1,256 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.utils;
+
+import org.jboss.logging.Logger;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Downloads a file in parallel HTTP byte ranges written into a preallocated file. Ranges already
+ * downloaded are recorded in a '.parts' file next to it, so a failed download is resumed
+ * from the ranges still missing instead of starting again.
+ */
+public class ChunkedDownloader {
+
+    private static final Logger LOGGER = Logger.getLogger(ChunkedDownloader.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long RETRY_DELAY_MILLIS = 2000;
+
+    private final URL url;
+    private final int connectionTimeout;
+    private final int readTimeout;
+    private final int threads;
+    private final long chunkSize;
+    private final int retries;
+    private final LongConsumer progressListener;
+
+    public ChunkedDownloader(URL url, int connectionTimeout, int readTimeout, int threads, long chunkSize, int retries, LongConsumer progressListener) {
+        this.url = url;
+        this.connectionTimeout = connectionTimeout;
+        this.readTimeout = readTimeout;
+        this.threads = Math.max(1, threads);
+        this.chunkSize = chunkSize;
+        this.retries = Math.max(0, retries);
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * @param file          destination, kept together with its '.parts' file if the download fails
+     * @param contentLength size of the remote file
+     * @param validator     strong ETag or Last-Modified of the remote file, sent as 'If-Range' so ranges of a file
+     *                      replaced in the meantime are rejected
+     */
+    public void download(File file, long contentLength, String validator) throws IOException {
+        File partsFile = getPartsFile(file);
+        int chunks = (int) ((contentLength + chunkSize - 1) / chunkSize);
+
+        BitSet completed = file.exists() && file.length() == contentLength
+                ? readParts(partsFile, contentLength, validator)
+                : new BitSet(chunks);
+
+        long completedBytes = 0;
+        for (int i = completed.nextSetBit(0); i >= 0; i = completed.nextSetBit(i + 1)) {
+            completedBytes += getChunkLength(i, contentLength);
+        }
+        if (completedBytes > 0) {
+            LOGGER.infof("Resuming download of %s, %s of %s bytes already downloaded", url, completedBytes, contentLength);
+        }
+        AtomicLong downloadedBytes = new AtomicLong(completedBytes);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "searchpe-download-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"); FileChannel channel = randomAccessFile.getChannel()) {
+            randomAccessFile.setLength(contentLength);
+
+            ExecutorCompletionService<Integer> completionService = new ExecutorCompletionService<>(executor);
+            int submitted = 0;
+            for (int i = completed.nextClearBit(0); i < chunks; i = completed.nextClearBit(i + 1)) {
+                int chunk = i;
+                completionService.submit(() -> {
+                    downloadChunkWithRetries(channel, chunk, contentLength, validator);
+                    return chunk;
+                });
+                submitted++;
+            }
+
+            for (; submitted > 0; submitted--) {
+                int chunk = completionService.take().get();
+
+                // Data must be on disk before the range is recorded as completed
+                channel.force(false);
+                completed.set(chunk);
+                writeParts(partsFile, contentLength, validator, completed);
+
+                progressListener.accept(downloadedBytes.addAndGet(getChunkLength(chunk, contentLength)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Files.deleteIfExists(partsFile.toPath());
+    }
+
+    public static File getPartsFile(File file) {
+        return new File(file.getPath() + ".parts");
+    }
+
+    private long getChunkLength(int chunk, long contentLength) {
+        return Math.min(chunkSize, contentLength - chunk * chunkSize);
+    }
+
+    private void downloadChunkWithRetries(FileChannel channel, int chunk, long contentLength, String validator) throws IOException, InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                downloadChunk(channel, chunk, contentLength, validator);
+                return;
+            } catch (RangeRejectedException e) {
+                // Asking again gets the same answer
+                throw e;
+            } catch (IOException e) {
+                if (attempt >= retries) {
+                    throw e;
+                }
+                LOGGER.warnf("Download of range %s of %s failed, retrying (%s/%s): %s", chunk, url, attempt + 1, retries, e.getMessage());
+                Thread.sleep(RETRY_DELAY_MILLIS * (attempt + 1));
+            }
+        }
+    }
+
+    private void downloadChunk(FileChannel channel, int chunk, long contentLength, String validator) throws IOException {
+        long start = chunk * chunkSize;
+        long end = start + getChunkLength(chunk, contentLength);
+
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(connectionTimeout);
+        connection.setReadTimeout(readTimeout);
+        connection.setRequestProperty("Range", "bytes=" + start + "-" + (end - 1));
+        if (validator != null) {
+            connection.setRequestProperty("If-Range", validator);
+        }
+
+        try {
+            int responseCode = connection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                // The whole file, the remote file changed or ranges are not supported anymore
+                throw new RangeRejectedException("Expected partial content for range " + start + "-" + (end - 1) + " of " + url + " but got the whole file");
+            }
+            if (responseCode != HttpURLConnection.HTTP_PARTIAL) {
+                throw new IOException("Expected partial content for range " + start + "-" + (end - 1) + " of " + url + " but got " + responseCode);
+            }
+
+            // Servers ignoring 'If-Range' still tell the ETag of what they sent
+            String etag = connection.getHeaderField("ETag");
+            if (validator != null && validator.startsWith("\"") && etag != null && !etag.equals(validator)) {
+                throw new RangeRejectedException("Range " + start + "-" + (end - 1) + " of " + url + " has ETag " + etag + " instead of " + validator);
+            }
+
+            long position = start;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (InputStream inputStream = connection.getInputStream()) {
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    if (position + read > end) {
+                        throw new IOException("Range " + start + "-" + (end - 1) + " of " + url + " is longer than expected");
+                    }
+
+                    ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+                    while (byteBuffer.hasRemaining()) {
+                        position += channel.write(byteBuffer, position);
+                    }
+                }
+            }
+
+            if (position != end) {
+                throw new IOException("Range " + start + "-" + (end - 1) + " of " + url + " ended at " + position);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * @return chunks completed, none if the parts file is missing, unreadable or belongs to another remote file
+     */
+    private BitSet readParts(File partsFile, long contentLength, String validator) {
+        if (!partsFile.exists()) {
+            return new BitSet();
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(partsFile)))) {
+            long partsContentLength = in.readLong();
+            long partsChunkSize = in.readLong();
+            String partsValidator = in.readUTF();
+            byte[] bits = new byte[in.readInt()];
+            in.readFully(bits);
+
+            if (partsContentLength != contentLength || partsChunkSize != chunkSize || !partsValidator.equals(String.valueOf(validator))) {
+                return new BitSet();
+            }
+            return BitSet.valueOf(bits);
+        } catch (IOException e) {
+            LOGGER.warnf("Ignoring unreadable %s: %s", partsFile, e.getMessage());
+            return new BitSet();
+        }
+    }
+
+    private void writeParts(File partsFile, long contentLength, String validator, BitSet completed) throws IOException {
+        File tmpFile = new File(partsFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            byte[] bits = completed.toByteArray();
+            out.writeLong(contentLength);
+            out.writeLong(chunkSize);
+            out.writeUTF(String.valueOf(validator));
+            out.writeInt(bits.length);
+            out.write(bits);
+        }
+        Files.move(tmpFile.toPath(), partsFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * The server did not send a range of the file given by the validator: it does not support ranges or the file
+     * changed. Downloading the whole file is the only way left.
+     */
+    public static class RangeRejectedException extends IOException {
+        public RangeRejectedException(String message) {
+            super(message);
+        }
+    }
+
+}
@@ -23,6 +23,9 @@ import java.util.Optional;
 
 public class DataHelper {
 
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
     public static String[] readLine(String line, int size) {
         String[] result = new String[size];
 
@@ -66,7 +69,72 @@ public class DataHelper {
                 .withManzana(columns[13])
                 .withKilometro(columns[14])
                 .build();
+        contribuyente.rowHash = rowHash(contribuyente);
 
         return Optional.of(contribuyente);
     }
+
+    public static boolean isValid(PadronParser.Row row) {
+        return !row.isNull(PadronParser.RUC) && !row.isNull(PadronParser.RAZON_SOCIAL);
+    }
+
+    /**
+     * Creates the entity straight from the parser offsets, rows should be checked with {@link #isValid(PadronParser.Row)} first.
+     */
+    public static ContribuyenteEntity buildContribuyenteEntity(Long versionId, PadronParser.Row row) {
+        ContribuyenteEntity contribuyente = new ContribuyenteEntity();
+        contribuyente.id = new ContribuyenteId(versionId, row.getString(PadronParser.RUC));
+        contribuyente.razonSocial = row.getString(PadronParser.RAZON_SOCIAL);
+        contribuyente.estadoContribuyente = row.getString(PadronParser.ESTADO_CONTRIBUYENTE);
+        contribuyente.condicionDomicilio = row.getString(PadronParser.CONDICION_DOMICILIO);
+        contribuyente.ubigeo = row.getString(PadronParser.UBIGEO);
+        contribuyente.tipoVia = row.getString(PadronParser.TIPO_VIA);
+        contribuyente.nombreVia = row.getString(PadronParser.NOMBRE_VIA);
+        contribuyente.codigoZona = row.getString(PadronParser.CODIGO_ZONA);
+        contribuyente.tipoZona = row.getString(PadronParser.TIPO_ZONA);
+        contribuyente.numero = row.getString(PadronParser.NUMERO);
+        contribuyente.interior = row.getString(PadronParser.INTERIOR);
+        contribuyente.lote = row.getString(PadronParser.LOTE);
+        contribuyente.departamento = row.getString(PadronParser.DEPARTAMENTO);
+        contribuyente.manzana = row.getString(PadronParser.MANZANA);
+        contribuyente.kilometro = row.getString(PadronParser.KILOMETRO);
+        contribuyente.rowHash = rowHash(contribuyente);
+        return contribuyente;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of every column except the version, equal rows of different versions have equal hashes.
+     */
+    public static long rowHash(ContribuyenteEntity contribuyente) {
+        long hash = FNV_OFFSET_BASIS;
+        hash = hash(hash, contribuyente.id.ruc);
+        hash = hash(hash, contribuyente.razonSocial);
+        hash = hash(hash, contribuyente.estadoContribuyente);
+        hash = hash(hash, contribuyente.condicionDomicilio);
+        hash = hash(hash, contribuyente.ubigeo);
+        hash = hash(hash, contribuyente.tipoVia);
+        hash = hash(hash, contribuyente.nombreVia);
+        hash = hash(hash, contribuyente.codigoZona);
+        hash = hash(hash, contribuyente.tipoZona);
+        hash = hash(hash, contribuyente.numero);
+        hash = hash(hash, contribuyente.interior);
+        hash = hash(hash, contribuyente.lote);
+        hash = hash(hash, contribuyente.departamento);
+        hash = hash(hash, contribuyente.manzana);
+        hash = hash(hash, contribuyente.kilometro);
+        return hash;
+    }
+
+    private static long hash(long hash, String value) {
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+            }
+        } else {
+            // Distinguishes null from empty
+            hash = (hash ^ 0xFFFF) * FNV_PRIME;
+        }
+        // Column separator, so values moving between columns change the hash
+        return (hash ^ '|') * FNV_PRIME;
+    }
 }
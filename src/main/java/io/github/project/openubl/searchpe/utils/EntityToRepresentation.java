@@ -38,6 +38,9 @@ public class EntityToRepresentation {
         rep.setMeta(repMeta);
 
         repMeta.setCount(model.getTotalElements());
+        if (model.getTotalElements() != null) {
+            repMeta.setCountExact(model.isTotalElementsExact());
+        }
         repMeta.setOffset(model.getOffset());
         repMeta.setLimit(model.getLimit());
 
@@ -16,15 +16,15 @@
  */
 package io.github.project.openubl.searchpe.utils;
 
+import org.apache.commons.io.FilenameUtils;
 import org.jboss.logging.Logger;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -95,4 +95,72 @@ public class FileHelper {
         }
     }
 
+    /**
+     * Open the first entry of a zip file that matches the given extension.
+     * The returned stream reads the uncompressed content of the entry directly
+     * from the zip file, so nothing is written to disk. Closing the returned
+     * stream closes the zip file.
+     *
+     * @param zipFile   file to read
+     * @param extension extension of the entry to open, e.g. "txt"
+     * @return stream positioned at the beginning of the entry
+     * @throws FileNotFoundException if there is no entry matching the extension
+     */
+    public static InputStream openZipEntry(File zipFile, String extension) throws IOException {
+        if (!zipFile.exists() || zipFile.isDirectory()) {
+            throw new IOException("Zip file not found or is a directory");
+        }
+
+        ZipInputStream zis = new ZipInputStream(new BufferedInputStream(new FileInputStream(zipFile), 64 * 1024));
+        try {
+            ZipEntry zipEntry = zis.getNextEntry();
+            while (zipEntry != null) {
+                if (!zipEntry.isDirectory() && FilenameUtils.getExtension(zipEntry.getName()).equalsIgnoreCase(extension)) {
+                    logger.debugf("Streaming %s from %s", zipEntry.getName(), zipFile.getAbsolutePath());
+                    return zis;
+                }
+                zipEntry = zis.getNextEntry();
+            }
+        } catch (IOException e) {
+            zis.close();
+            throw e;
+        }
+
+        zis.close();
+        throw new FileNotFoundException("Could not find any *." + extension + " entry in " + zipFile.getName());
+    }
+
+    public static MessageDigest createSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return SHA-256 of the file content, as lowercase hex
+     */
+    public static String sha256(File file) throws IOException {
+        MessageDigest digest = createSha256Digest();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream is = new FileInputStream(file)) {
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    public static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
 }
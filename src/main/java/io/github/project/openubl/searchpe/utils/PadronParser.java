@@ -0,0 +1,356 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Pipe delimited parser for the 'padrón reducido'.
+ * Lines are read into a reusable char buffer and columns are exposed as offsets of that buffer,
+ * so no String is created unless it is explicitly requested through {@link Row}.
+ * Columns are trimmed, and empty columns or columns containing only '-' are considered null.
+ */
+public class PadronParser {
+
+    public static final int COLUMNS = 15;
+
+    public static final int RUC = 0;
+    public static final int RAZON_SOCIAL = 1;
+    public static final int ESTADO_CONTRIBUYENTE = 2;
+    public static final int CONDICION_DOMICILIO = 3;
+    public static final int UBIGEO = 4;
+    public static final int TIPO_VIA = 5;
+    public static final int NOMBRE_VIA = 6;
+    public static final int CODIGO_ZONA = 7;
+    public static final int TIPO_ZONA = 8;
+    public static final int NUMERO = 9;
+    public static final int INTERIOR = 10;
+    public static final int LOTE = 11;
+    public static final int DEPARTAMENTO = 12;
+    public static final int MANZANA = 13;
+    public static final int KILOMETRO = 14;
+
+    private static final char SEPARATOR = '|';
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    @FunctionalInterface
+    public interface Sink {
+        void accept(Row row) throws IOException;
+    }
+
+    private final Reader reader;
+    private final Row row;
+
+    private char[] buffer;
+    private int position;
+    private int limit;
+    private boolean eof;
+    private long lineNumber;
+
+    public PadronParser(Reader reader) {
+        this(reader, DEFAULT_BUFFER_SIZE);
+    }
+
+    public PadronParser(Reader reader, int bufferSize) {
+        this.reader = reader;
+        this.buffer = new char[bufferSize];
+        this.row = new Row(new StringPool(1024));
+    }
+
+    /**
+     * Creates a parser for blocks of lines already in memory, see {@link #reset(char[], int, int)}.
+     */
+    public PadronParser() {
+        this(null, 0);
+        this.eof = true;
+    }
+
+    /**
+     * Parse the lines contained in a block of chars, keeping the pool of low cardinality values.
+     * Only valid for parsers created without a {@link Reader}.
+     */
+    public void reset(char[] chars, int offset, int length) {
+        if (reader != null) {
+            throw new IllegalStateException("Parser bound to a reader can not be reset");
+        }
+
+        this.buffer = chars;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    /**
+     * Parse all remaining lines and hand them to the sink.
+     * The same {@link Row} instance is reused for every line, so sinks must not keep a reference to it.
+     *
+     * @param skipHeader whether the first line read should be skipped
+     * @return number of lines handed to the sink
+     */
+    public long parse(boolean skipHeader, Sink sink) throws IOException {
+        if (skipHeader) {
+            nextRow();
+        }
+
+        long count = 0;
+        while (nextRow()) {
+            sink.accept(row);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Move to the next non blank line.
+     *
+     * @return false if there are no more lines to read
+     */
+    public boolean nextRow() throws IOException {
+        while (true) {
+            int lineEnd = findLineEnd();
+            if (lineEnd < 0) {
+                return false;
+            }
+
+            int lineStart = position;
+            position = lineEnd + 1;
+            lineNumber++;
+
+            if (lineEnd > lineStart && buffer[lineEnd - 1] == '\r') {
+                lineEnd--;
+            }
+            if (lineEnd > lineStart) {
+                row.split(buffer, lineStart, lineEnd);
+                return true;
+            }
+        }
+    }
+
+    public Row getRow() {
+        return row;
+    }
+
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * @return index of the '\n' ending the current line, or of the last char of the stream if it has no trailing '\n'
+     */
+    private int findLineEnd() throws IOException {
+        int scanFrom = position;
+        while (true) {
+            for (int i = scanFrom; i < limit; i++) {
+                if (buffer[i] == '\n') {
+                    return i;
+                }
+            }
+
+            if (eof) {
+                if (position < limit) {
+                    // Last line without line terminator, append a virtual one
+                    ensureCapacity(limit + 1);
+                    buffer[limit] = '\n';
+                    return limit++;
+                }
+                return -1;
+            }
+
+            scanFrom = limit - position;
+            fill();
+        }
+    }
+
+    private void fill() throws IOException {
+        // Move the incomplete line to the beginning of the buffer
+        int remaining = limit - position;
+        if (remaining > 0 && position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+        }
+        limit = remaining;
+        position = 0;
+
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+
+        int read = reader.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            eof = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+        }
+    }
+
+    /**
+     * A parsed line. Values are only valid until the parser moves to the next line.
+     */
+    public static final class Row {
+        private static final boolean[] INTERNED = new boolean[COLUMNS];
+
+        static {
+            INTERNED[ESTADO_CONTRIBUYENTE] = true;
+            INTERNED[CONDICION_DOMICILIO] = true;
+            INTERNED[TIPO_VIA] = true;
+            INTERNED[TIPO_ZONA] = true;
+        }
+
+        private final StringPool pool;
+        private final int[] starts = new int[COLUMNS];
+        private final int[] ends = new int[COLUMNS];
+
+        private char[] chars;
+
+        private Row(StringPool pool) {
+            this.pool = pool;
+        }
+
+        private void split(char[] chars, int lineStart, int lineEnd) {
+            this.chars = chars;
+
+            int column = 0;
+            int columnStart = lineStart;
+            for (int i = lineStart; i <= lineEnd && column < COLUMNS; i++) {
+                if (i == lineEnd || chars[i] == SEPARATOR) {
+                    setColumn(column++, columnStart, i);
+                    columnStart = i + 1;
+                }
+            }
+            for (; column < COLUMNS; column++) {
+                starts[column] = 0;
+                ends[column] = 0;
+            }
+        }
+
+        private void setColumn(int column, int start, int end) {
+            while (start < end && chars[start] <= ' ') {
+                start++;
+            }
+            while (end > start && chars[end - 1] <= ' ') {
+                end--;
+            }
+            if (end - start == 1 && chars[start] == '-') {
+                end = start;
+            }
+
+            starts[column] = start;
+            ends[column] = end;
+        }
+
+        public boolean isNull(int column) {
+            return starts[column] == ends[column];
+        }
+
+        public int getStart(int column) {
+            return starts[column];
+        }
+
+        public int getEnd(int column) {
+            return ends[column];
+        }
+
+        public char[] getChars() {
+            return chars;
+        }
+
+        /**
+         * @return the value of the column, low cardinality columns return a shared instance
+         */
+        public String getString(int column) {
+            if (isNull(column)) {
+                return null;
+            }
+            if (INTERNED[column]) {
+                return pool.get(chars, starts[column], ends[column]);
+            }
+            return new String(chars, starts[column], ends[column] - starts[column]);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < COLUMNS; i++) {
+                if (i > 0) {
+                    sb.append(SEPARATOR);
+                }
+                sb.append(isNull(i) ? "-" : new String(chars, starts[i], ends[i] - starts[i]));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Open addressing table that returns the same String instance for equal char sequences
+     * without allocating when the value was already seen. Once full, new values are not cached.
+     */
+    static final class StringPool {
+        private final String[] table;
+        private final int maxSize;
+        private int size;
+
+        StringPool(int maxSize) {
+            int capacity = Integer.highestOneBit(maxSize * 2 - 1) << 1;
+            this.table = new String[capacity];
+            this.maxSize = maxSize;
+        }
+
+        String get(char[] chars, int start, int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + chars[i];
+            }
+
+            int mask = table.length - 1;
+            int index = (hash ^ (hash >>> 16)) & mask;
+            while (true) {
+                String value = table[index];
+                if (value == null) {
+                    String result = new String(chars, start, end - start);
+                    if (size < maxSize) {
+                        table[index] = result;
+                        size++;
+                    }
+                    return result;
+                }
+                if (value.hashCode() == hash && equals(value, chars, start, end)) {
+                    return value;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        private static boolean equals(String value, char[] chars, int start, int end) {
+            if (value.length() != end - start) {
+                return false;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                if (value.charAt(i) != chars[start + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+}
@@ -16,10 +16,17 @@
  */
 package io.github.project.openubl.searchpe.utils;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import io.github.project.openubl.searchpe.models.PageBean;
 import io.github.project.openubl.searchpe.models.SortBean;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -58,4 +65,55 @@ public class ResourceUtils {
                 .filter(f -> validFieldNamesList.contains(f.getFieldName()))
                 .collect(Collectors.toList());
     }
+
+    /**
+     * @param sortBeans  sort of the search the page belongs to
+     * @param sortValues sort values of the last hit of a page, as returned by Elasticsearch
+     * @return opaque cursor to be sent back to get the next page
+     */
+    public static String encodeCursor(List<SortBean> sortBeans, JsonArray sortValues) {
+        JsonObject json = new JsonObject();
+        json.addProperty("sort", getSortSpec(sortBeans));
+        json.add("after", sortValues);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param sortBeans sort of the search the cursor is used with
+     * @return sort values to be used as 'search_after'
+     * @throws IllegalArgumentException if the cursor was not created by {@link #encodeCursor(List, JsonArray)}
+     *                                  for the same sort
+     */
+    public static JsonArray decodeCursor(String cursor, List<SortBean> sortBeans) {
+        JsonElement json;
+        try {
+            json = JsonParser.parseString(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (JsonParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+
+        if (!json.isJsonObject()
+                || !json.getAsJsonObject().has("sort") || !json.getAsJsonObject().get("sort").isJsonPrimitive()
+                || !json.getAsJsonObject().has("after") || !json.getAsJsonObject().get("after").isJsonArray()) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+
+        // Values of a relevance sort and of a field sort have the same shape, only the sort tells them apart
+        JsonObject payload = json.getAsJsonObject();
+        JsonArray sortValues = payload.getAsJsonArray("after");
+        if (!getSortSpec(sortBeans).equals(payload.get("sort").getAsString())
+                || sortValues.size() != Math.max(sortBeans.size(), 1) + 1) {
+            throw new IllegalArgumentException("Cursor does not match sort_by");
+        }
+        return sortValues;
+    }
+
+    /**
+     * @return the sort as sent to Elasticsearch, the score when no field is sorted, always followed by the RUC
+     */
+    private static String getSortSpec(List<SortBean> sortBeans) {
+        return sortBeans.isEmpty()
+                ? "_score"
+                : sortBeans.stream().map(SortBean::getQuery).collect(Collectors.joining(","));
+    }
 }
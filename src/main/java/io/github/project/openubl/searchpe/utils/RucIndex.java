@@ -0,0 +1,181 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Read only, memory mapped RUC lookup file of a single version, written by {@link RucIndexWriter}.
+ * <p>
+ * Layout, all numbers big endian:
+ * <pre>
+ * header  magic (int), format (int), versionId (long), count (long), dataOffset (long)
+ * index   count entries sorted by RUC: RUC as a number (long), record position relative to dataOffset (long)
+ * data    records: every column but the RUC as a length (short, -1 for null) followed by its UTF-8 bytes
+ * </pre>
+ * Lookups are a binary search over the mapped index, nothing but the found columns is copied into the heap.
+ */
+public class RucIndex implements Closeable {
+
+    static final int MAGIC = 0x53504958; // 'SPIX'
+    static final int FORMAT = 1;
+    static final int HEADER_SIZE = 32;
+    static final int ENTRY_SIZE = 16;
+
+    // A MappedByteBuffer can not be bigger than 2GB, bigger files are mapped in segments
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    // Segments overlap by more than the biggest record, so any record starting in a segment is read from it
+    static final int MAX_RECORD_SIZE = (PadronParser.COLUMNS - 1) * (2 + Short.MAX_VALUE);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long versionId;
+    private final long count;
+    private final long dataOffset;
+
+    private RucIndex(FileChannel channel, MappedByteBuffer[] segments, long versionId, long count, long dataOffset) {
+        this.channel = channel;
+        this.segments = segments;
+        this.versionId = versionId;
+        this.count = count;
+        this.dataOffset = dataOffset;
+    }
+
+    public static RucIndex open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException(file + " is not a RUC index");
+            }
+
+            int segmentCount = (int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+            MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                long position = i * SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, SEGMENT_SIZE + MAX_RECORD_SIZE));
+            }
+
+            ByteBuffer header = segments[0];
+            if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT) {
+                throw new IOException(file + " is not a RUC index of format " + FORMAT);
+            }
+            long versionId = header.getLong(8);
+            long count = header.getLong(16);
+            long dataOffset = header.getLong(24);
+            if (dataOffset != HEADER_SIZE + count * ENTRY_SIZE || dataOffset > size) {
+                throw new IOException(file + " is truncated");
+            }
+
+            return new RucIndex(channel, segments, versionId, count, dataOffset);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long getVersionId() {
+        return versionId;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return columns of the RUC in the order of {@link PadronParser}, empty if the RUC is not in the index
+     */
+    public Optional<String[]> find(String ruc) {
+        long key = toKey(ruc);
+        if (key < 0) {
+            return Optional.empty();
+        }
+
+        long low = 0;
+        long high = count - 1;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            long entryPosition = HEADER_SIZE + middle * ENTRY_SIZE;
+            long middleKey = getLong(entryPosition);
+
+            if (middleKey < key) {
+                low = middle + 1;
+            } else if (middleKey > key) {
+                high = middle - 1;
+            } else {
+                return Optional.of(readRecord(ruc, dataOffset + getLong(entryPosition + 8)));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private String[] readRecord(String ruc, long position) {
+        ByteBuffer buffer = segments[(int) (position / SEGMENT_SIZE)].duplicate();
+        buffer.position((int) (position % SEGMENT_SIZE));
+
+        String[] columns = new String[PadronParser.COLUMNS];
+        columns[PadronParser.RUC] = ruc;
+        for (int i = 1; i < columns.length; i++) {
+            short length = buffer.getShort();
+            if (length >= 0) {
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                columns[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+        return columns;
+    }
+
+    private long getLong(long position) {
+        return segments[(int) (position / SEGMENT_SIZE)].getLong((int) (position % SEGMENT_SIZE));
+    }
+
+    /**
+     * @return RUC as a number, -1 if it is not made of 11 digits
+     */
+    public static long toKey(String ruc) {
+        if (ruc == null || ruc.length() != 11) {
+            return -1;
+        }
+
+        long key = 0;
+        for (int i = 0; i < ruc.length(); i++) {
+            char c = ruc.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            key = key * 10 + (c - '0');
+        }
+        return key;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Mappings are released once the buffers are garbage collected
+        channel.close();
+    }
+
+}
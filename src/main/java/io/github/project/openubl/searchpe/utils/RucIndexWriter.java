@@ -0,0 +1,142 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a {@link RucIndex} file from rows sorted by RUC. Index entries and records are streamed into two
+ * temporary files that are concatenated by {@link #finish()}, so memory does not depend on the number of rows.
+ * The file only appears, atomically, once it is complete.
+ */
+public class RucIndexWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+    private final long versionId;
+
+    private final Path indexFile;
+    private final Path dataFile;
+    private final DataOutputStream index;
+    private final DataOutputStream data;
+
+    private long count;
+    private long dataSize;
+    private long lastKey = -1;
+
+    public RucIndexWriter(Path file, long versionId) throws IOException {
+        this.file = file;
+        this.versionId = versionId;
+        this.indexFile = file.resolveSibling(file.getFileName() + ".index.tmp");
+        this.dataFile = file.resolveSibling(file.getFileName() + ".data.tmp");
+        this.index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile), BUFFER_SIZE));
+        this.data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dataFile), BUFFER_SIZE));
+    }
+
+    /**
+     * @param columns row in the order of {@link PadronParser}, its RUC must be greater than the one of the previous row
+     */
+    public void add(String[] columns) throws IOException {
+        long key = RucIndex.toKey(columns[PadronParser.RUC]);
+        if (key < 0) {
+            throw new IOException("RUC " + columns[PadronParser.RUC] + " can not be indexed");
+        }
+        if (key <= lastKey) {
+            throw new IOException("RUC " + columns[PadronParser.RUC] + " is not sorted or is duplicated");
+        }
+        lastKey = key;
+
+        index.writeLong(key);
+        index.writeLong(dataSize);
+        count++;
+
+        for (int i = 1; i < PadronParser.COLUMNS; i++) {
+            if (columns[i] == null) {
+                data.writeShort(-1);
+                dataSize += 2;
+            } else {
+                byte[] bytes = columns[i].getBytes(StandardCharsets.UTF_8);
+                if (bytes.length > Short.MAX_VALUE) {
+                    throw new IOException("Column " + i + " of RUC " + columns[PadronParser.RUC] + " is too long to be indexed");
+                }
+                data.writeShort(bytes.length);
+                data.write(bytes);
+                dataSize += 2 + bytes.length;
+            }
+        }
+    }
+
+    /**
+     * Write the index file, replacing any previous one.
+     *
+     * @return number of RUCs in the index
+     */
+    public long finish() throws IOException {
+        index.close();
+        data.close();
+
+        Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            try (DataOutputStream header = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), RucIndex.HEADER_SIZE))) {
+                header.writeInt(RucIndex.MAGIC);
+                header.writeInt(RucIndex.FORMAT);
+                header.writeLong(versionId);
+                header.writeLong(count);
+                header.writeLong(RucIndex.HEADER_SIZE + count * RucIndex.ENTRY_SIZE);
+                header.flush();
+
+                transfer(indexFile, channel);
+                transfer(dataFile, channel);
+                channel.force(true);
+            }
+        }
+        Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        return count;
+    }
+
+    private static void transfer(Path source, FileChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, target);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        index.close();
+        data.close();
+        Files.deleteIfExists(indexFile);
+        Files.deleteIfExists(dataFile);
+        Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".tmp"));
+    }
+
+}
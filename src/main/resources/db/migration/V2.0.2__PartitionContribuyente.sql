@@ -0,0 +1,51 @@
+ALTER TABLE CONTRIBUYENTE
+    DROP CONSTRAINT fk_contribuyente_version;
+ALTER TABLE CONTRIBUYENTE
+    RENAME CONSTRAINT contribuyente_pkey TO contribuyente_old_pkey;
+ALTER TABLE CONTRIBUYENTE
+    RENAME TO CONTRIBUYENTE_OLD;
+
+CREATE TABLE CONTRIBUYENTE
+(
+    version_id           SMALLINT     NOT NULL,
+    ruc                  VARCHAR(11)  NOT NULL,
+    razon_social         VARCHAR(150) NOT NULL,
+    estado_contribuyente VARCHAR(30),
+    condicion_domicilio  VARCHAR(30),
+    ubigeo               VARCHAR(6),
+    tipo_via             VARCHAR(30),
+    nombre_via           VARCHAR(100),
+    codigo_zona          VARCHAR(30),
+    tipo_zona            VARCHAR(30),
+    numero               VARCHAR(30),
+    interior             VARCHAR(30),
+    lote                 VARCHAR(30),
+    departamento         VARCHAR(30),
+    manzana              VARCHAR(30),
+    kilometro            VARCHAR(30),
+    PRIMARY KEY (version_id, ruc)
+) PARTITION BY LIST (version_id);
+
+ALTER TABLE CONTRIBUYENTE
+    ADD CONSTRAINT fk_contribuyente_version FOREIGN KEY (version_id) REFERENCES VERSION;
+
+-- Rows of versions without their own partition
+CREATE TABLE CONTRIBUYENTE_DEFAULT PARTITION OF CONTRIBUYENTE DEFAULT;
+
+DO
+$$
+    DECLARE
+        v RECORD;
+    BEGIN
+        FOR v IN SELECT DISTINCT version_id FROM CONTRIBUYENTE_OLD
+            LOOP
+                EXECUTE format('CREATE TABLE contribuyente_v%s PARTITION OF contribuyente FOR VALUES IN (%s)', v.version_id, v.version_id);
+            END LOOP;
+    END
+$$;
+
+INSERT INTO CONTRIBUYENTE
+SELECT *
+FROM CONTRIBUYENTE_OLD;
+
+DROP TABLE CONTRIBUYENTE_OLD;
@@ -0,0 +1,26 @@
+-- Lets every node know a version changed, see VersionNotificationListener
+CREATE OR REPLACE FUNCTION notify_version_change() RETURNS TRIGGER AS
+$$
+BEGIN
+    IF (TG_OP = 'DELETE') THEN
+        PERFORM pg_notify('searchpe_version', OLD.id::text);
+    ELSE
+        PERFORM pg_notify('searchpe_version', NEW.id::text);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER version_insert_delete_notify
+    AFTER INSERT OR DELETE
+    ON VERSION
+    FOR EACH ROW
+EXECUTE PROCEDURE notify_version_change();
+
+-- Progress updates of 'records' do not change the active version
+CREATE TRIGGER version_status_notify
+    AFTER UPDATE
+    ON VERSION
+    FOR EACH ROW
+    WHEN (OLD.status IS DISTINCT FROM NEW.status)
+EXECUTE PROCEDURE notify_version_change();
@@ -0,0 +1,3 @@
+-- Hash of the columns of each row, used to find the contribuyentes changed between two versions
+ALTER TABLE CONTRIBUYENTE
+    ADD COLUMN row_hash BIGINT;
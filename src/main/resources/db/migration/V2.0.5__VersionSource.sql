@@ -0,0 +1,7 @@
+-- Identifies the padrón file each version was imported from, so unchanged files are not imported again
+ALTER TABLE VERSION
+    ADD COLUMN etag VARCHAR(255);
+ALTER TABLE VERSION
+    ADD COLUMN last_modified VARCHAR(100);
+ALTER TABLE VERSION
+    ADD COLUMN sha256 VARCHAR(64);
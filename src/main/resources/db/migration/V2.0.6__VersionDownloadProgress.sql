@@ -0,0 +1,2 @@
+ALTER TABLE VERSION
+    ADD COLUMN downloaded_bytes BIGINT;
@@ -0,0 +1,16 @@
+-- Blocks of the padrón already committed by an import, used to resume it after a crash or restart
+CREATE TABLE IMPORT_CHECKPOINT
+(
+    version_id   SMALLINT NOT NULL,
+    block        BIGINT   NOT NULL,
+    end_position BIGINT   NOT NULL,
+    records      INTEGER  NOT NULL,
+    PRIMARY KEY (version_id, block)
+);
+
+ALTER TABLE IMPORT_CHECKPOINT
+    ADD CONSTRAINT fk_import_checkpoint_version FOREIGN KEY (version_id) REFERENCES VERSION ON DELETE CASCADE;
+
+-- Downloaded file the version is imported from
+ALTER TABLE VERSION
+    ADD COLUMN source_file VARCHAR(255);
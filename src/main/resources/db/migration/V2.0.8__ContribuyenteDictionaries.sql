@@ -0,0 +1,49 @@
+-- Values of the low cardinality columns of CONTRIBUYENTE, every column has its own dictionary 'name'
+-- and stores the code of its value. Code 0 is never used.
+CREATE TABLE DICTIONARY
+(
+    name  VARCHAR(30) NOT NULL,
+    code  SMALLINT    NOT NULL,
+    value VARCHAR(30) NOT NULL,
+    PRIMARY KEY (name, code),
+    UNIQUE (name, value)
+);
+
+INSERT INTO DICTIONARY (name, code, value)
+SELECT 'estado_contribuyente', row_number() OVER (ORDER BY value), value
+FROM (SELECT DISTINCT estado_contribuyente AS value FROM CONTRIBUYENTE WHERE estado_contribuyente IS NOT NULL) AS v;
+
+INSERT INTO DICTIONARY (name, code, value)
+SELECT 'condicion_domicilio', row_number() OVER (ORDER BY value), value
+FROM (SELECT DISTINCT condicion_domicilio AS value FROM CONTRIBUYENTE WHERE condicion_domicilio IS NOT NULL) AS v;
+
+INSERT INTO DICTIONARY (name, code, value)
+SELECT 'ubigeo', row_number() OVER (ORDER BY value), value
+FROM (SELECT DISTINCT ubigeo AS value FROM CONTRIBUYENTE WHERE ubigeo IS NOT NULL) AS v;
+
+INSERT INTO DICTIONARY (name, code, value)
+SELECT 'tipo_via', row_number() OVER (ORDER BY value), value
+FROM (SELECT DISTINCT tipo_via AS value FROM CONTRIBUYENTE WHERE tipo_via IS NOT NULL) AS v;
+
+INSERT INTO DICTIONARY (name, code, value)
+SELECT 'tipo_zona', row_number() OVER (ORDER BY value), value
+FROM (SELECT DISTINCT tipo_zona AS value FROM CONTRIBUYENTE WHERE tipo_zona IS NOT NULL) AS v;
+
+-- Subqueries are not allowed in USING, the lookup is hidden in a function
+CREATE FUNCTION dictionary_code(dictionary_name VARCHAR, dictionary_value VARCHAR) RETURNS SMALLINT AS
+$$
+SELECT code
+FROM DICTIONARY
+WHERE name = dictionary_name
+  AND value = dictionary_value
+$$ LANGUAGE sql STABLE;
+
+-- A single statement, so every partition is rewritten only once
+ALTER TABLE CONTRIBUYENTE
+    ALTER COLUMN estado_contribuyente TYPE SMALLINT USING dictionary_code('estado_contribuyente', estado_contribuyente),
+    ALTER COLUMN condicion_domicilio TYPE SMALLINT USING dictionary_code('condicion_domicilio', condicion_domicilio),
+    ALTER COLUMN ubigeo TYPE SMALLINT USING dictionary_code('ubigeo', ubigeo),
+    ALTER COLUMN tipo_via TYPE SMALLINT USING dictionary_code('tipo_via', tipo_via),
+    ALTER COLUMN tipo_zona TYPE SMALLINT USING dictionary_code('tipo_zona', tipo_zona);
+
+DROP FUNCTION dictionary_code(VARCHAR, VARCHAR);
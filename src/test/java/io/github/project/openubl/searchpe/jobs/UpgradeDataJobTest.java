@@ -0,0 +1,119 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.jobs;
+
+import io.github.project.openubl.searchpe.models.jpa.entity.VersionEntity;
+import org.junit.jupiter.api.Test;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.Scheduler;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UpgradeDataJobTest {
+
+    private static JobExecutionContext context(String versionId, boolean recovering) {
+        JobDataMap data = new JobDataMap();
+        data.put("versionId", versionId);
+
+        return (JobExecutionContext) Proxy.newProxyInstance(UpgradeDataJobTest.class.getClassLoader(), new Class[]{JobExecutionContext.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "isRecovering":
+                    return recovering;
+                case "getMergedJobDataMap":
+                    return data;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    @Test
+    public void test_shouldScheduleRecoverableJob() throws Exception {
+        // Given
+        List<JobDetail> scheduledJobs = new ArrayList<>();
+        UpgradeDataJob upgradeDataJob = new UpgradeDataJob();
+        upgradeDataJob.quartz = (Scheduler) Proxy.newProxyInstance(UpgradeDataJobTest.class.getClassLoader(), new Class[]{Scheduler.class}, (proxy, method, args) -> {
+            if (method.getName().equals("scheduleJob") && args.length == 2) {
+                scheduledJobs.add((JobDetail) args[0]);
+                return new Date();
+            }
+            throw new UnsupportedOperationException(method.getName());
+        });
+
+        VersionEntity version = new VersionEntity();
+        version.id = 7L;
+
+        // When
+        upgradeDataJob.trigger(version);
+
+        // Then
+        assertEquals(1, scheduledJobs.size());
+        assertTrue(scheduledJobs.get(0).requestsRecovery());
+        assertEquals("7", scheduledJobs.get(0).getJobDataMap().get("versionId"));
+    }
+
+    @Test
+    public void test_shouldResumeRecoveringJob() throws Exception {
+        // Given
+        RecordingUpgradeDataJob upgradeDataJob = new RecordingUpgradeDataJob();
+        UpgradeDataJob.MyJob job = new UpgradeDataJob.MyJob();
+        job.job = upgradeDataJob;
+
+        // When
+        job.execute(context("7", true));
+
+        // Then
+        assertEquals(Collections.singletonList("resume 7"), upgradeDataJob.calls);
+    }
+
+    @Test
+    public void test_shouldUpgradeNewJob() throws Exception {
+        // Given
+        RecordingUpgradeDataJob upgradeDataJob = new RecordingUpgradeDataJob();
+        UpgradeDataJob.MyJob job = new UpgradeDataJob.MyJob();
+        job.job = upgradeDataJob;
+
+        // When
+        job.execute(context("7", false));
+
+        // Then
+        assertEquals(Collections.singletonList("upgrade 7"), upgradeDataJob.calls);
+    }
+
+    private static class RecordingUpgradeDataJob extends UpgradeDataJob {
+        private final List<String> calls = new ArrayList<>();
+
+        @Override
+        void upgradeData(Long versionId) {
+            calls.add("upgrade " + versionId);
+        }
+
+        @Override
+        void resumeData(Long versionId) {
+            calls.add("resume " + versionId);
+        }
+    }
+
+}
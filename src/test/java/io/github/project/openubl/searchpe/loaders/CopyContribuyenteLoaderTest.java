@@ -0,0 +1,151 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.loaders;
+
+import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteEntity;
+import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteId;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CopyContribuyenteLoaderTest {
+
+    private static final int COLUMNS = 17;
+
+    @Test
+    public void test_shouldEscapeSpecialCharacters() {
+        // Given
+        ContribuyenteEntity contribuyente = ContribuyenteEntity.Builder.aContribuyenteEntity()
+                .withId(new ContribuyenteId(1L, "20100000001"))
+                .withRazonSocial("A\tB")
+                .withNombreVia("LINE1\nLINE2")
+                .withCodigoZona("CR\r")
+                .withNumero("C:\\DIR")
+                .withInterior("")
+                .build();
+        contribuyente.rowHash = 42L;
+
+        // When
+        StringBuilder sb = new StringBuilder();
+        CopyContribuyenteLoader.appendRow(sb, contribuyente, null);
+
+        // Then
+        assertEquals("1\t20100000001\tA\\tB\t\\N\t\\N\t\\N\t\\N\tLINE1\\nLINE2\tCR\\r\t\\N\tC:\\\\DIR\t\t\\N\t\\N\t\\N\t\\N\t42\n", sb.toString());
+    }
+
+    @Test
+    public void test_shouldKeepColumnsOfValuesWithSeparators() {
+        // Given
+        ContribuyenteEntity contribuyente = ContribuyenteEntity.Builder.aContribuyenteEntity()
+                .withId(new ContribuyenteId(1L, "20100000001"))
+                .withRazonSocial("\t")
+                .withNombreVia("\n\r")
+                .withCodigoZona("\\")
+                .withNumero("\\N")
+                .withInterior("\\t")
+                .withLote("")
+                .withDepartamento(" \t ")
+                .withManzana("\r\n")
+                .withKilometro("END\\")
+                .build();
+
+        // When
+        StringBuilder sb = new StringBuilder();
+        CopyContribuyenteLoader.appendRow(sb, contribuyente, null);
+
+        // Then
+        String row = sb.toString();
+        assertEquals(row.length() - 1, row.indexOf('\n'), "Only the row terminator is a raw line feed");
+        assertEquals(-1, row.indexOf('\r'));
+
+        List<String> columns = readRow(row);
+        assertEquals(COLUMNS, columns.size());
+        assertEquals("1", columns.get(0));
+        assertEquals("20100000001", columns.get(1));
+        assertEquals("\t", columns.get(2));
+        assertEquals("\n\r", columns.get(7));
+        assertEquals("\\", columns.get(8));
+        assertEquals("\\N", columns.get(10));
+        assertEquals("\\t", columns.get(11));
+        assertEquals("", columns.get(12));
+        assertEquals(" \t ", columns.get(13));
+        assertEquals("\r\n", columns.get(14));
+        assertEquals("END\\", columns.get(15));
+        assertNull(columns.get(16));
+    }
+
+    @Test
+    public void test_shouldWriteNullForMissingValues() {
+        // Given
+        ContribuyenteEntity contribuyente = ContribuyenteEntity.Builder.aContribuyenteEntity()
+                .withId(new ContribuyenteId(1L, "20100000001"))
+                .build();
+
+        // When
+        StringBuilder sb = new StringBuilder();
+        CopyContribuyenteLoader.appendRow(sb, contribuyente, null);
+
+        // Then
+        List<String> columns = readRow(sb.toString());
+        assertEquals(COLUMNS, columns.size());
+        for (int i = 2; i < COLUMNS; i++) {
+            assertNull(columns.get(i), "Column " + i);
+        }
+    }
+
+    /**
+     * Split and unescape a row the way PostgreSQL reads the COPY text format.
+     */
+    private static List<String> readRow(String row) {
+        List<String> columns = new ArrayList<>();
+        StringBuilder column = new StringBuilder();
+        for (int i = 0; i < row.length(); i++) {
+            char c = row.charAt(i);
+            if (c == '\t' || c == '\n') {
+                String value = column.toString();
+                columns.add(value.equals("\u0000N") ? null : value);
+                column.setLength(0);
+            } else if (c == '\\') {
+                char escaped = row.charAt(++i);
+                switch (escaped) {
+                    case 't':
+                        column.append('\t');
+                        break;
+                    case 'n':
+                        column.append('\n');
+                        break;
+                    case 'r':
+                        column.append('\r');
+                        break;
+                    case 'N':
+                        // Only a whole column, marked apart from a text that is literally "\N"
+                        column.append("\u0000N");
+                        break;
+                    default:
+                        column.append(escaped);
+                }
+            } else {
+                column.append(c);
+            }
+        }
+        return columns;
+    }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.loaders;
+
+import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImportPipelineTest {
+
+    // Enough lines for 3 blocks of 1M chars, see ImportPipeline
+    private static final int LINES = 30_000;
+
+    // Lines in the middle of the second and third blocks
+    private static final int LINE_OF_BLOCK_1 = 15_000;
+    private static final int LINE_OF_BLOCK_2 = 25_000;
+
+    private String padron;
+    private Store store;
+
+    @BeforeEach
+    public void beforeEach() {
+        StringBuilder sb = new StringBuilder("RUC|NOMBRE O RAZÓN SOCIAL|ESTADO DEL CONTRIBUYENTE|CONDICIÓN DE DOMICILIO|UBIGEO|TIPO DE VÍA|NOMBRE DE VÍA|CÓDIGO DE ZONA|TIPO DE ZONA|NÚMERO|INTERIOR|LOTE|DEPARTAMENTO|MANZANA|KILÓMETRO|\n");
+        for (int i = 0; i < LINES; i++) {
+            sb.append(ruc(i)).append("|RAZON SOCIAL ").append(i).append("|ACTIVO|HABIDO|150101|AV.|LOS PINOS|-|-|123|-|-|-|-|-|\n");
+        }
+        padron = sb.toString();
+        store = new Store();
+    }
+
+    private static String ruc(int line) {
+        return String.format("20%09d", line);
+    }
+
+    private int run(Map<Long, Integer> completedBlocks, int threads) throws IOException {
+        store.loaded.clear();
+        ImportPipeline pipeline = new ImportPipeline(1L, () -> new StoreLoader(store), row -> true, records -> {
+        }, completedBlocks, threads, threads, 4);
+        return pipeline.run(new StringReader(padron));
+    }
+
+    @Test
+    public void test_shouldResumeAfterFailureInTheMiddleOfBlock() throws IOException {
+        // Given
+        store.failingRuc = ruc(LINE_OF_BLOCK_1);
+        assertThrows(IOException.class, () -> run(Collections.emptyMap(), 1));
+
+        assertEquals(Collections.singleton(0L), store.checkpoints.keySet());
+        assertTrue(store.rows.containsKey(ruc(0)));
+        assertFalse(store.rows.containsKey(ruc(LINE_OF_BLOCK_1 - 1)), "Rows of the failed block are not committed");
+
+        // When
+        store.failingRuc = null;
+        int records = run(new HashMap<>(store.checkpoints), 1);
+
+        // Then
+        assertEquals(LINES, records);
+        assertEquals(LINES, store.rows.size());
+        assertEquals(new HashSet<>(Arrays.asList(0L, 1L, 2L)), store.checkpoints.keySet());
+        assertFalse(store.loaded.contains(ruc(0)), "Completed block is skipped");
+        assertTrue(store.loaded.contains(ruc(LINE_OF_BLOCK_1 - 1)), "Failed block is loaded again");
+    }
+
+    @Test
+    public void test_shouldSkipEveryBlockAlreadyComplete() throws IOException {
+        // Given
+        assertEquals(LINES, run(Collections.emptyMap(), 2));
+        Map<Long, Integer> completedBlocks = new HashMap<>(store.checkpoints);
+        assertEquals(3, completedBlocks.size());
+        assertEquals(LINES, completedBlocks.values().stream().mapToInt(Integer::intValue).sum());
+
+        // When
+        int records = run(completedBlocks, 2);
+
+        // Then
+        assertEquals(LINES, records);
+        assertTrue(store.loaded.isEmpty());
+    }
+
+    @Test
+    public void test_shouldSumRecordsOfCompletedBlocks() throws IOException {
+        // Given
+        Map<Long, Integer> completedBlocks = new HashMap<>();
+        completedBlocks.put(0L, 7);
+        completedBlocks.put(1L, 11);
+        completedBlocks.put(2L, 13);
+
+        // When
+        int records = run(completedBlocks, 2);
+
+        // Then
+        assertEquals(31, records);
+        assertTrue(store.loaded.isEmpty());
+    }
+
+    @Test
+    public void test_shouldResumeTwice() throws IOException {
+        // Given
+        store.failingRuc = ruc(LINE_OF_BLOCK_1);
+        assertThrows(IOException.class, () -> run(Collections.emptyMap(), 1));
+
+        store.failingRuc = ruc(LINE_OF_BLOCK_2);
+        assertThrows(IOException.class, () -> run(new HashMap<>(store.checkpoints), 1));
+        assertEquals(new HashSet<>(Arrays.asList(0L, 1L)), store.checkpoints.keySet());
+
+        // When
+        store.failingRuc = null;
+        int records = run(new HashMap<>(store.checkpoints), 1);
+
+        // Then
+        assertEquals(LINES, records);
+        assertEquals(LINES, store.rows.size());
+        assertFalse(store.loaded.contains(ruc(LINE_OF_BLOCK_1)));
+        assertTrue(store.loaded.contains(ruc(LINE_OF_BLOCK_2)));
+    }
+
+    /**
+     * Committed rows and checkpoints, shared by the loaders of every run
+     */
+    private static class Store {
+        private final Map<String, ContribuyenteEntity> rows = new ConcurrentHashMap<>();
+        private final Map<Long, Integer> checkpoints = new ConcurrentHashMap<>();
+        private final Set<String> loaded = ConcurrentHashMap.newKeySet();
+        private volatile String failingRuc;
+    }
+
+    /**
+     * Commits rows and checkpoint together like the database loaders, rows of a failed block are discarded
+     */
+    private static class StoreLoader implements ContribuyenteLoader {
+        private final Store store;
+        private final List<ContribuyenteEntity> pending = new ArrayList<>();
+
+        private StoreLoader(Store store) {
+            this.store = store;
+        }
+
+        @Override
+        public void load(ContribuyenteEntity contribuyente) throws IOException {
+            if (contribuyente.id.ruc.equals(store.failingRuc)) {
+                throw new IOException("Could not load " + contribuyente.id.ruc);
+            }
+            pending.add(contribuyente);
+            store.loaded.add(contribuyente.id.ruc);
+        }
+
+        @Override
+        public void commit(ImportCheckpoint checkpoint) throws IOException {
+            for (ContribuyenteEntity contribuyente : pending) {
+                if (store.rows.putIfAbsent(contribuyente.id.ruc, contribuyente) != null) {
+                    throw new IOException("Duplicate key " + contribuyente.id.ruc);
+                }
+            }
+            store.checkpoints.put(checkpoint.getBlock(), checkpoint.getRecords());
+            pending.clear();
+        }
+
+        @Override
+        public boolean isIndexing() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            pending.clear();
+        }
+    }
+
+}
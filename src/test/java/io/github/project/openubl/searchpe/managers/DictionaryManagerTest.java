@@ -0,0 +1,154 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.managers;
+
+import io.agroal.api.AgroalDataSource;
+import io.github.project.openubl.searchpe.models.jpa.entity.Dictionary;
+import io.github.project.openubl.searchpe.resources.config.ElasticsearchServer;
+import io.github.project.openubl.searchpe.resources.config.PostgreSQLServer;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Inject;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@QuarkusTest
+@QuarkusTestResource(ElasticsearchServer.class)
+@QuarkusTestResource(PostgreSQLServer.class)
+public class DictionaryManagerTest {
+
+    @Inject
+    DictionaryManager dictionaryManager;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Test
+    public void encodeAndDecode() {
+        // Given
+        String value = newValue();
+
+        // When
+        short code = dictionaryManager.encode(Dictionary.UBIGEO, value);
+
+        // Then
+        assertEquals(value, dictionaryManager.decode(Dictionary.UBIGEO, code));
+        assertEquals(code, dictionaryManager.encode(Dictionary.UBIGEO, value));
+        assertEquals(1, countRows(Dictionary.UBIGEO, value));
+    }
+
+    @Test
+    public void encodeSameNewValueConcurrently() throws Exception {
+        // Given
+        String value = newValue();
+        int threads = 8;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // When
+        List<Future<Short>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return dictionaryManager.encode(Dictionary.TIPO_VIA, value);
+                }));
+            }
+            start.countDown();
+
+            Set<Short> codes = new HashSet<>();
+            for (Future<Short> future : futures) {
+                codes.add(future.get());
+            }
+
+            // Then
+            assertEquals(1, codes.size());
+            assertEquals(value, dictionaryManager.decode(Dictionary.TIPO_VIA, codes.iterator().next()));
+            assertEquals(1, countRows(Dictionary.TIPO_VIA, value));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void decodeCodeCreatedByAnotherNode() throws SQLException {
+        // Given
+        dictionaryManager.findCodes(Dictionary.TIPO_ZONA, value -> true);
+
+        String value = newValue();
+        short code;
+        try (Connection connection = dataSource.getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement(DictionaryManager.INSERT_SQL)) {
+                statement.setString(1, Dictionary.TIPO_ZONA.getColumnName());
+                statement.setString(2, value);
+                statement.setString(3, Dictionary.TIPO_ZONA.getColumnName());
+                statement.executeUpdate();
+            }
+            try (PreparedStatement statement = connection.prepareStatement("SELECT code FROM dictionary WHERE name = ? AND value = ?")) {
+                statement.setString(1, Dictionary.TIPO_ZONA.getColumnName());
+                statement.setString(2, value);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    code = resultSet.getShort(1);
+                }
+            }
+        }
+
+        // When
+        String result = dictionaryManager.decode(Dictionary.TIPO_ZONA, code);
+
+        // Then
+        assertEquals(value, result);
+        assertEquals(code, dictionaryManager.encode(Dictionary.TIPO_ZONA, value));
+    }
+
+    private static String newValue() {
+        // Values fit in VARCHAR(30)
+        return "value-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    private int countRows(Dictionary dictionary, String value) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) FROM dictionary WHERE name = ? AND value = ?")) {
+            statement.setString(1, dictionary.getColumnName());
+            statement.setString(2, value);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getInt(1);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
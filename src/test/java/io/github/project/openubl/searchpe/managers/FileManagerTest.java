@@ -0,0 +1,97 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.managers;
+
+import io.github.project.openubl.searchpe.models.DownloadedFile;
+import io.github.project.openubl.searchpe.utils.ChunkedDownloader;
+import io.github.project.openubl.searchpe.utils.FileHelper;
+import io.github.project.openubl.searchpe.utils.RangeHttpServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileManagerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FileManager createFileManager(RangeHttpServer server) throws IOException {
+        FileManager fileManager = new FileManager();
+        fileManager.workingDirectory = tempDir.toString();
+        fileManager.zipURL = server.getUrl().toString();
+        fileManager.connectionTimeout = 10_000;
+        fileManager.readTimeout = 10_000;
+        fileManager.downloadThreads = 2;
+        fileManager.downloadChunkSize = 1_000L;
+        fileManager.downloadRetries = 0;
+        return fileManager;
+    }
+
+    @Test
+    public void test_shouldDownloadInRanges() throws IOException {
+        // Given
+        byte[] content = new byte[10_000];
+        new Random(1).nextBytes(content);
+
+        try (RangeHttpServer server = new RangeHttpServer(content, "\"v1\"")) {
+            // When
+            DownloadedFile downloadedFile = createFileManager(server).downloadFile(null, null, bytes -> {
+            });
+
+            // Then
+            assertEquals(10, server.getRequestedRanges().size());
+            assertArrayEquals(content, Files.readAllBytes(downloadedFile.getFile().toPath()));
+            assertEquals("\"v1\"", downloadedFile.getEtag());
+            assertEquals(FileHelper.sha256(downloadedFile.getFile()), downloadedFile.getSha256());
+        }
+    }
+
+    @Test
+    public void test_shouldDownloadWholeFileWhenRangesAreIgnored() throws IOException {
+        // Given
+        byte[] content = new byte[10_000];
+        new Random(1).nextBytes(content);
+
+        try (RangeHttpServer server = new RangeHttpServer(content, "\"v1\"")) {
+            server.setIgnoreRanges(true);
+
+            // When
+            DownloadedFile downloadedFile = createFileManager(server).downloadFile(null, null, bytes -> {
+            });
+
+            // Then
+            File file = downloadedFile.getFile();
+            assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+            assertEquals("\"v1\"", downloadedFile.getEtag());
+            assertEquals(FileHelper.sha256(file), downloadedFile.getSha256());
+
+            // Files of the ranges are removed
+            File[] files = tempDir.toFile().listFiles();
+            assertNotNull(files);
+            assertEquals(1, files.length);
+            assertFalse(ChunkedDownloader.getPartsFile(file).exists());
+        }
+    }
+
+}
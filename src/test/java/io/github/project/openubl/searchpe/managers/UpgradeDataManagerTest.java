@@ -0,0 +1,208 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.managers;
+
+import io.agroal.api.AgroalDataSource;
+import io.github.project.openubl.searchpe.models.jpa.ContribuyenteRepository;
+import io.github.project.openubl.searchpe.models.jpa.VersionRepository;
+import io.github.project.openubl.searchpe.models.jpa.entity.Status;
+import io.github.project.openubl.searchpe.models.jpa.entity.VersionEntity;
+import io.github.project.openubl.searchpe.resources.config.ElasticsearchServer;
+import io.github.project.openubl.searchpe.resources.config.PostgreSQLServer;
+import io.github.project.openubl.searchpe.utils.FileHelper;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+@QuarkusTestResource(ElasticsearchServer.class)
+@QuarkusTestResource(PostgreSQLServer.class)
+public class UpgradeDataManagerTest {
+
+    // A single block, see ImportPipelineTest for resuming several blocks
+    private static final String PADRON = "RUC|NOMBRE O RAZON SOCIAL|ESTADO DEL CONTRIBUYENTE|CONDICION DE DOMICILIO|UBIGEO|TIPO DE VIA|NOMBRE DE VIA|CODIGO DE ZONA|TIPO DE ZONA|NUMERO|INTERIOR|LOTE|DEPARTAMENTO|MANZANA|KILOMETRO|\n" +
+            "10000000001|PERSONA NATURAL|ACTIVO|HABIDO|150101|-|-|-|-|-|-|-|-|-|-|\n" +
+            "20000000001|EMPRESA 1|ACTIVO|HABIDO|150101|AV.|LOS PINOS|-|-|123|-|-|-|-|-|\n" +
+            "20000000002|EMPRESA 2|BAJA DE OFICIO|NO HALLADO|040101|-|-|-|-|-|-|-|-|-|-|\n";
+
+    @Inject
+    UpgradeDataManager upgradeDataManager;
+
+    @Inject
+    VersionRepository versionRepository;
+
+    @Inject
+    ContribuyenteRepository contribuyenteRepository;
+
+    @Inject
+    IndexManager indexManager;
+
+    @Inject
+    RucIndexManager rucIndexManager;
+
+    @Inject
+    ActiveVersionManager activeVersionManager;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    private final List<Long> versionIds = new ArrayList<>();
+    private final List<File> files = new ArrayList<>();
+
+    @AfterEach
+    public void afterEach() throws IOException {
+        // Aliases go back to the index shared by all versions, as other tests expect
+        for (Long versionId : versionIds) {
+            indexManager.deleteVersionIndex(versionId, null);
+            rucIndexManager.delete(versionId);
+        }
+        for (File file : files) {
+            Files.deleteIfExists(file.toPath());
+        }
+
+        contribuyenteRepository.deleteAll();
+        versionRepository.deleteAll();
+        activeVersionManager.invalidate();
+    }
+
+    @Test
+    public void resumeAfterFailureInTheMiddleOfBlock() throws Exception {
+        // Given
+        // Rows of the block being written were rolled back together with its checkpoint
+        File padron = createPadronZip();
+        VersionEntity version = createImportingVersion(padron);
+
+        // When
+        upgradeDataManager.resume(version.id);
+
+        // Then
+        VersionEntity result = versionRepository.findById(version.id);
+        assertEquals(Status.COMPLETED, result.status);
+        assertEquals(3, result.records);
+        assertEquals(3, contribuyenteRepository.count("id.versionId", version.id));
+        assertEquals(0, countCheckpoints(version.id), "Checkpoints are deleted once the version is committed");
+        assertFalse(padron.exists());
+    }
+
+    @Test
+    public void resumeWhenEveryBlockIsComplete() throws Exception {
+        // Given
+        File padron = createPadronZip();
+        VersionEntity version = createImportingVersion(padron);
+        insertCheckpoint(version.id, 0, PADRON.length(), 3);
+
+        // When
+        upgradeDataManager.resume(version.id);
+
+        // Then
+        VersionEntity result = versionRepository.findById(version.id);
+        assertEquals(Status.COMPLETED, result.status);
+        assertEquals(3, result.records, "Records of the completed blocks are counted");
+        assertEquals(0, contribuyenteRepository.count("id.versionId", version.id), "Completed blocks are not imported again");
+        assertEquals(0, countCheckpoints(version.id));
+    }
+
+    @Test
+    public void resumeTwice() throws Exception {
+        // Given
+        File padron = createPadronZip();
+        VersionEntity version = createImportingVersion(padron);
+
+        upgradeDataManager.resume(version.id);
+        VersionEntity resumed = versionRepository.findById(version.id);
+
+        // When
+        upgradeDataManager.resume(version.id);
+
+        // Then
+        VersionEntity result = versionRepository.findById(version.id);
+        assertEquals(Status.COMPLETED, result.status);
+        assertEquals(3, result.records);
+        assertEquals(resumed.updatedAt, result.updatedAt, "A completed version is left as it is");
+        assertEquals(3, contribuyenteRepository.count("id.versionId", version.id));
+        assertEquals(0, countCheckpoints(version.id));
+    }
+
+    private File createPadronZip() throws IOException {
+        File file = Files.createTempFile("padron_reducido_ruc", ".zip").toFile();
+        files.add(file);
+
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file))) {
+            zip.putNextEntry(new ZipEntry("padron_reducido_ruc.txt"));
+            zip.write(PADRON.getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        return file;
+    }
+
+    private VersionEntity createImportingVersion(File sourceFile) throws IOException {
+        VersionEntity version = VersionEntity.Builder.aVersionEntity()
+                .withStatus(Status.IMPORTING)
+                .withCreatedAt(new Date())
+                .withUpdatedAt(new Date())
+                .withRecords(0)
+                .build();
+        version.sourceFile = sourceFile.getAbsolutePath();
+        version.sha256 = FileHelper.sha256(sourceFile);
+
+        versionRepository.persist(version);
+        versionIds.add(version.id);
+        return version;
+    }
+
+    private void insertCheckpoint(Long versionId, long block, long endPosition, int records) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("INSERT INTO import_checkpoint (version_id, block, end_position, records) VALUES (?, ?, ?, ?)")) {
+            statement.setLong(1, versionId);
+            statement.setLong(2, block);
+            statement.setLong(3, endPosition);
+            statement.setInt(4, records);
+            statement.executeUpdate();
+        }
+    }
+
+    private int countCheckpoints(Long versionId) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) FROM import_checkpoint WHERE version_id = ?")) {
+            statement.setLong(1, versionId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getInt(1);
+            }
+        }
+    }
+
+}
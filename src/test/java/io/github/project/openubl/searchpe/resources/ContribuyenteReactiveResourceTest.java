@@ -0,0 +1,149 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.resources;
+
+import io.github.project.openubl.searchpe.models.jpa.ContribuyenteRepository;
+import io.github.project.openubl.searchpe.models.jpa.VersionRepository;
+import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteEntity;
+import io.github.project.openubl.searchpe.models.jpa.entity.ContribuyenteId;
+import io.github.project.openubl.searchpe.models.jpa.entity.Status;
+import io.github.project.openubl.searchpe.models.jpa.entity.VersionEntity;
+import io.github.project.openubl.searchpe.resources.config.ElasticsearchServer;
+import io.github.project.openubl.searchpe.resources.config.PostgreSQLServer;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.inject.Inject;
+import java.util.Date;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+
+@QuarkusTest
+@QuarkusTestResource(ElasticsearchServer.class)
+@QuarkusTestResource(PostgreSQLServer.class)
+public class ContribuyenteReactiveResourceTest {
+
+    @Inject
+    VersionRepository versionRepository;
+
+    @Inject
+    ContribuyenteRepository contribuyenteRepository;
+
+    @AfterEach
+    public void afterEach() {
+        contribuyenteRepository.deleteAll();
+        versionRepository.deleteAll();
+    }
+
+    @Test
+    public void getContribuyentes() {
+        // Given
+        VersionEntity version = VersionEntity.Builder.aVersionEntity()
+                .withStatus(Status.COMPLETED)
+                .withCreatedAt(new Date())
+                .withUpdatedAt(new Date())
+                .build();
+        versionRepository.persist(version);
+
+        ContribuyenteEntity contribuyente1 = ContribuyenteEntity.Builder.aContribuyenteEntity()
+                .withId(new ContribuyenteId(version.id, "11111111111"))
+                .withRazonSocial("razonSocial1")
+                .withEstadoContribuyente("ACTIVO")
+                .build();
+        ContribuyenteEntity contribuyente2 = ContribuyenteEntity.Builder.aContribuyenteEntity()
+                .withId(new ContribuyenteId(version.id, "22222222222"))
+                .withRazonSocial("razonSocial2")
+                .build();
+        ContribuyenteEntity contribuyente3 = ContribuyenteEntity.Builder.aContribuyenteEntity()
+                .withId(new ContribuyenteId(version.id, "33333333333"))
+                .withRazonSocial("razonSocial3")
+                .build();
+        contribuyenteRepository.persist(contribuyente1, contribuyente2, contribuyente3);
+
+        // When
+        given()
+                .header("Content-Type", "application/json")
+                .when()
+                .get("/reactive/contribuyentes?sort_by=razonSocial&limit=2")
+                .then()
+                .statusCode(200)
+                .body(
+                        "meta.offset", is(0),
+                        "meta.limit", is(2),
+                        "meta.count", is(3),
+                        "meta.cursor", notNullValue(),
+                        "data.size()", is(2),
+                        "data[0].ruc", is("11111111111"),
+                        "data[0].estadoContribuyente", is("ACTIVO"),
+                        "data[1].ruc", is("22222222222")
+                );
+
+        given()
+                .header("Content-Type", "application/json")
+                .when()
+                .get("/reactive/contribuyentes?filterText=razonSocial3&count=none")
+                .then()
+                .statusCode(200)
+                .body(
+                        "data.size()", is(1),
+                        "data[0].razonSocial", is("razonSocial3")
+                );
+    }
+
+    @Test
+    public void getContribuyente() {
+        // Given
+        VersionEntity version = VersionEntity.Builder.aVersionEntity()
+                .withStatus(Status.COMPLETED)
+                .withCreatedAt(new Date())
+                .withUpdatedAt(new Date())
+                .build();
+        versionRepository.persist(version);
+
+        ContribuyenteEntity contribuyente = ContribuyenteEntity.Builder.aContribuyenteEntity()
+                .withId(new ContribuyenteId(version.id, "11111111111"))
+                .withRazonSocial("razonSocial1")
+                .withUbigeo("150101")
+                .build();
+        contribuyenteRepository.persist(contribuyente);
+
+        // When
+        given()
+                .header("Content-Type", "application/json")
+                .when()
+                .get("/reactive/contribuyentes/" + contribuyente.id.ruc)
+                .then()
+                .statusCode(200)
+                .body(
+                        "ruc", is(contribuyente.id.ruc),
+                        "razonSocial", is(contribuyente.razonSocial),
+                        "ubigeo", is("150101")
+                );
+
+        given()
+                .header("Content-Type", "application/json")
+                .when()
+                .get("/reactive/contribuyentes/99999999999")
+                .then()
+                .statusCode(404);
+    }
+
+}
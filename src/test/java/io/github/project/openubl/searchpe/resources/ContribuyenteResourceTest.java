@@ -30,11 +30,17 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
 import javax.inject.Inject;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @QuarkusTest
 @QuarkusTestResource(ElasticsearchServer.class)
@@ -71,6 +77,8 @@ public class ContribuyenteResourceTest {
         ContribuyenteEntity contribuyente1 = ContribuyenteEntity.Builder.aContribuyenteEntity()
                 .withId(new ContribuyenteId(version2.id, "11111111111"))
                 .withRazonSocial("razonSocial1")
+                .withEstadoContribuyente("ACTIVO")
+                .withUbigeo("150101")
                 .build();
         ContribuyenteEntity contribuyente2 = ContribuyenteEntity.Builder.aContribuyenteEntity()
                 .withId(new ContribuyenteId(version2.id, "22222222222"))
@@ -93,11 +101,197 @@ public class ContribuyenteResourceTest {
                         "meta.offset", is(0),
                         "meta.limit", is(10),
                         "meta.count", is(3),
-                        "data.size()", is(3)
+                        "data.size()", is(3),
+                        "data.find { it.ruc == '11111111111' }.razonSocial", is("razonSocial1"),
+                        "data.find { it.ruc == '11111111111' }.estadoContribuyente", is("ACTIVO"),
+                        "data.find { it.ruc == '11111111111' }.ubigeo", is("150101")
                 );
 
     }
 
+    @Test
+    public void getContribuyentesCountModes() {
+        // Given
+        VersionEntity version = VersionEntity.Builder.aVersionEntity()
+                .withStatus(Status.COMPLETED)
+                .withCreatedAt(new Date())
+                .withUpdatedAt(new Date())
+                .build();
+        versionRepository.persist(version);
+
+        ContribuyenteEntity contribuyente1 = ContribuyenteEntity.Builder.aContribuyenteEntity()
+                .withId(new ContribuyenteId(version.id, "11111111111"))
+                .withRazonSocial("razonSocial1")
+                .build();
+        ContribuyenteEntity contribuyente2 = ContribuyenteEntity.Builder.aContribuyenteEntity()
+                .withId(new ContribuyenteId(version.id, "22222222222"))
+                .withRazonSocial("razonSocial2")
+                .build();
+        contribuyenteRepository.persist(contribuyente1, contribuyente2);
+
+        // When
+        given()
+                .header("Content-Type", "application/json")
+                .when()
+                .get("/contribuyentes?count=none")
+                .then()
+                .statusCode(200)
+                .body(
+                        "meta.count", nullValue(),
+                        "data.size()", is(2)
+                );
+
+        given()
+                .header("Content-Type", "application/json")
+                .when()
+                .get("/contribuyentes?count=approximate")
+                .then()
+                .statusCode(200)
+                .body(
+                        "meta.count", is(2),
+                        "meta.countExact", is(true),
+                        "data.size()", is(2)
+                );
+
+        given()
+                .header("Content-Type", "application/json")
+                .when()
+                .get("/contribuyentes?count=maybe")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    public void getContribuyentesWithCursor() {
+        // Given
+        VersionEntity version = VersionEntity.Builder.aVersionEntity()
+                .withStatus(Status.COMPLETED)
+                .withCreatedAt(new Date())
+                .withUpdatedAt(new Date())
+                .build();
+        versionRepository.persist(version);
+
+        ContribuyenteEntity contribuyente1 = ContribuyenteEntity.Builder.aContribuyenteEntity()
+                .withId(new ContribuyenteId(version.id, "11111111111"))
+                .withRazonSocial("razonSocial1")
+                .build();
+        ContribuyenteEntity contribuyente2 = ContribuyenteEntity.Builder.aContribuyenteEntity()
+                .withId(new ContribuyenteId(version.id, "22222222222"))
+                .withRazonSocial("razonSocial2")
+                .build();
+        ContribuyenteEntity contribuyente3 = ContribuyenteEntity.Builder.aContribuyenteEntity()
+                .withId(new ContribuyenteId(version.id, "33333333333"))
+                .withRazonSocial("razonSocial3")
+                .build();
+        contribuyenteRepository.persist(contribuyente1, contribuyente2, contribuyente3);
+
+        // When
+        String cursor = given()
+                .header("Content-Type", "application/json")
+                .when()
+                .get("/contribuyentes?limit=2&sort_by=razonSocial")
+                .then()
+                .statusCode(200)
+                .body(
+                        "meta.count", is(3),
+                        "meta.cursor", notNullValue(),
+                        "data.size()", is(2),
+                        "data[0].razonSocial", is("razonSocial1"),
+                        "data[1].razonSocial", is("razonSocial2")
+                )
+                .extract().path("meta.cursor");
+
+        // Then
+        given()
+                .header("Content-Type", "application/json")
+                .when()
+                .get("/contribuyentes?limit=2&sort_by=razonSocial&cursor=" + cursor)
+                .then()
+                .statusCode(200)
+                .body(
+                        "meta.count", is(3),
+                        "meta.cursor", nullValue(),
+                        "data.size()", is(1),
+                        "data[0].razonSocial", is("razonSocial3")
+                );
+
+        given()
+                .header("Content-Type", "application/json")
+                .when()
+                .get("/contribuyentes?limit=2&cursor=invalid")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    public void getContribuyentesWithCursorOfAnotherSort() {
+        // Given
+        VersionEntity version = VersionEntity.Builder.aVersionEntity()
+                .withStatus(Status.COMPLETED)
+                .withCreatedAt(new Date())
+                .withUpdatedAt(new Date())
+                .build();
+        versionRepository.persist(version);
+
+        ContribuyenteEntity contribuyente1 = ContribuyenteEntity.Builder.aContribuyenteEntity()
+                .withId(new ContribuyenteId(version.id, "11111111111"))
+                .withRazonSocial("razonSocial1")
+                .build();
+        ContribuyenteEntity contribuyente2 = ContribuyenteEntity.Builder.aContribuyenteEntity()
+                .withId(new ContribuyenteId(version.id, "22222222222"))
+                .withRazonSocial("razonSocial2")
+                .build();
+        ContribuyenteEntity contribuyente3 = ContribuyenteEntity.Builder.aContribuyenteEntity()
+                .withId(new ContribuyenteId(version.id, "33333333333"))
+                .withRazonSocial("razonSocial3")
+                .build();
+        contribuyenteRepository.persist(contribuyente1, contribuyente2, contribuyente3);
+
+        String sortedCursor = given()
+                .header("Content-Type", "application/json")
+                .when()
+                .get("/contribuyentes?limit=2&sort_by=razonSocial")
+                .then()
+                .statusCode(200)
+                .extract().path("meta.cursor");
+        String relevanceCursor = given()
+                .header("Content-Type", "application/json")
+                .when()
+                .get("/contribuyentes?limit=2&filterText=razonSocial")
+                .then()
+                .statusCode(200)
+                .extract().path("meta.cursor");
+
+        // When
+        given()
+                .header("Content-Type", "application/json")
+                .when()
+                .get("/contribuyentes?limit=2&filterText=razonSocial&cursor=" + sortedCursor)
+                .then()
+                .statusCode(400);
+
+        given()
+                .header("Content-Type", "application/json")
+                .when()
+                .get("/contribuyentes?limit=2&sort_by=razonSocial&cursor=" + relevanceCursor)
+                .then()
+                .statusCode(400);
+
+        given()
+                .header("Content-Type", "application/json")
+                .when()
+                .get("/contribuyentes?limit=2&sort_by=razonSocial:desc&cursor=" + sortedCursor)
+                .then()
+                .statusCode(400);
+
+        given()
+                .header("Content-Type", "application/json")
+                .when()
+                .get("/reactive/contribuyentes?limit=2&sort_by=razonSocial&cursor=" + relevanceCursor)
+                .then()
+                .statusCode(400);
+    }
+
     @Test
     public void getContribuyente() {
         // Given
@@ -157,4 +351,92 @@ public class ContribuyenteResourceTest {
                 .statusCode(404);
     }
 
+    @Test
+    public void getContribuyentesBatch() {
+        // Given
+        VersionEntity version = VersionEntity.Builder.aVersionEntity()
+                .withStatus(Status.COMPLETED)
+                .withCreatedAt(new Date())
+                .withUpdatedAt(new Date())
+                .build();
+        versionRepository.persist(version);
+
+        ContribuyenteEntity contribuyente1 = ContribuyenteEntity.Builder.aContribuyenteEntity()
+                .withId(new ContribuyenteId(version.id, "11111111111"))
+                .withRazonSocial("razonSocial1")
+                .build();
+        ContribuyenteEntity contribuyente2 = ContribuyenteEntity.Builder.aContribuyenteEntity()
+                .withId(new ContribuyenteId(version.id, "22222222222"))
+                .withRazonSocial("razonSocial2")
+                .build();
+        contribuyenteRepository.persist(contribuyente1, contribuyente2);
+
+        // When
+        given()
+                .header("Content-Type", "application/json")
+                .body("[\"11111111111\", \"22222222222\", \"someRuc\"]")
+                .when()
+                .post("/contribuyentes/batch")
+                .then()
+                .statusCode(200)
+                .body(
+                        "size()", is(3),
+                        "'11111111111'.razonSocial", is(contribuyente1.razonSocial),
+                        "'22222222222'.razonSocial", is(contribuyente2.razonSocial),
+                        "someRuc", is(nullValue())
+                );
+    }
+
+
+    @Test
+    public void exportContribuyentes() {
+        // Given
+        VersionEntity version = VersionEntity.Builder.aVersionEntity()
+                .withStatus(Status.COMPLETED)
+                .withCreatedAt(new Date())
+                .withUpdatedAt(new Date())
+                .build();
+        versionRepository.persist(version);
+
+        ContribuyenteEntity contribuyente1 = ContribuyenteEntity.Builder.aContribuyenteEntity()
+                .withId(new ContribuyenteId(version.id, "11111111111"))
+                .withRazonSocial("razonSocial1")
+                .withEstadoContribuyente("ACTIVO")
+                .build();
+        ContribuyenteEntity contribuyente2 = ContribuyenteEntity.Builder.aContribuyenteEntity()
+                .withId(new ContribuyenteId(version.id, "22222222222"))
+                .withRazonSocial("razon, \"social\" 2")
+                .withEstadoContribuyente("BAJA DE OFICIO")
+                .build();
+        contribuyenteRepository.persist(contribuyente1, contribuyente2);
+
+        // When
+        String ndjson = given()
+                .when()
+                .get("/contribuyentes/export?estado=ACTIVO")
+                .then()
+                .statusCode(200)
+                .extract().asString();
+
+        String csv = given()
+                .when()
+                .get("/contribuyentes/export?format=csv")
+                .then()
+                .statusCode(200)
+                .extract().asString();
+
+        // Then
+        assertEquals("{\"ruc\":\"11111111111\",\"razonSocial\":\"razonSocial1\",\"estadoContribuyente\":\"ACTIVO\"}\n", ndjson);
+
+        List<String> lines = Arrays.asList(csv.split("\r\n"));
+        assertEquals(3, lines.size());
+        assertTrue(lines.contains("11111111111,razonSocial1,ACTIVO,,,,,,,,,,,,"));
+        assertTrue(lines.contains("22222222222,\"razon, \"\"social\"\" 2\",BAJA DE OFICIO,,,,,,,,,,,,"));
+
+        given()
+                .when()
+                .get("/contribuyentes/export?format=xml")
+                .then()
+                .statusCode(400);
+    }
 }
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkedDownloaderTest {
+
+    private static final int CONTENT_LENGTH = 10_000;
+    private static final long CHUNK_SIZE = 1_000;
+    private static final String ETAG = "\"v1\"";
+
+    @TempDir
+    Path tempDir;
+
+    private byte[] content;
+    private File file;
+
+    @BeforeEach
+    public void beforeEach() {
+        content = new byte[CONTENT_LENGTH];
+        new Random(1).nextBytes(content);
+        file = tempDir.resolve("padron.zip").toFile();
+    }
+
+    private static ChunkedDownloader downloader(RangeHttpServer server, int threads, int retries, AtomicLong progress) throws IOException {
+        return new ChunkedDownloader(server.getUrl(), 10_000, 10_000, threads, CHUNK_SIZE, retries, bytes -> progress.accumulateAndGet(bytes, Math::max));
+    }
+
+    private static List<Long> allRanges() {
+        return LongStream.range(0, CONTENT_LENGTH / CHUNK_SIZE).map(i -> i * CHUNK_SIZE).boxed().collect(Collectors.toList());
+    }
+
+    private static List<Long> sorted(List<Long> ranges) {
+        List<Long> result = new ArrayList<>(ranges);
+        Collections.sort(result);
+        return result;
+    }
+
+    @Test
+    public void test_shouldDownloadAllRanges() throws IOException {
+        try (RangeHttpServer server = new RangeHttpServer(content, ETAG)) {
+            // Given
+            AtomicLong progress = new AtomicLong();
+
+            // When
+            downloader(server, 4, 0, progress).download(file, CONTENT_LENGTH, ETAG);
+
+            // Then
+            assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+            assertEquals(allRanges(), sorted(server.getRequestedRanges()));
+            assertTrue(server.getRequestedIfRanges().stream().allMatch(ETAG::equals), "Every range is sent with If-Range");
+            assertEquals(CONTENT_LENGTH, progress.get());
+            assertFalse(ChunkedDownloader.getPartsFile(file).exists());
+        }
+    }
+
+    @Test
+    public void test_shouldDownloadLastShorterRange() throws IOException {
+        try (RangeHttpServer server = new RangeHttpServer(Arrays.copyOf(content, CONTENT_LENGTH - 1), ETAG)) {
+            // When
+            downloader(server, 4, 0, new AtomicLong()).download(file, CONTENT_LENGTH - 1, ETAG);
+
+            // Then
+            assertArrayEquals(Arrays.copyOf(content, CONTENT_LENGTH - 1), Files.readAllBytes(file.toPath()));
+            assertEquals(allRanges(), sorted(server.getRequestedRanges()));
+        }
+    }
+
+    @Test
+    public void test_shouldResumeMissingRanges() throws IOException {
+        try (RangeHttpServer server = new RangeHttpServer(content, ETAG)) {
+            // Given
+            server.setFailingRangeStart(5 * CHUNK_SIZE);
+            assertThrows(IOException.class, () -> downloader(server, 1, 0, new AtomicLong()).download(file, CONTENT_LENGTH, ETAG));
+            assertTrue(ChunkedDownloader.getPartsFile(file).exists());
+
+            server.setFailingRangeStart(-1);
+            server.clearRequests();
+            AtomicLong progress = new AtomicLong();
+
+            // When
+            downloader(server, 1, 0, progress).download(file, CONTENT_LENGTH, ETAG);
+
+            // Then
+            List<Long> ranges = server.getRequestedRanges();
+            assertTrue(ranges.contains(5 * CHUNK_SIZE));
+            for (long start = 0; start < 5 * CHUNK_SIZE; start += CHUNK_SIZE) {
+                assertFalse(ranges.contains(start), "Range " + start + " was already downloaded");
+            }
+            assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+            assertEquals(CONTENT_LENGTH, progress.get());
+            assertFalse(ChunkedDownloader.getPartsFile(file).exists());
+        }
+    }
+
+    @Test
+    public void test_shouldRejectWholeFileAnswer() throws IOException {
+        try (RangeHttpServer server = new RangeHttpServer(content, ETAG)) {
+            // Given
+            server.setIgnoreRanges(true);
+
+            // When
+            assertThrows(ChunkedDownloader.RangeRejectedException.class, () -> downloader(server, 1, 2, new AtomicLong()).download(file, CONTENT_LENGTH, ETAG));
+
+            // Then
+            assertEquals(1, server.getRequestedRanges().stream().filter(start -> start == 0).count(), "Not retried");
+        }
+    }
+
+    @Test
+    public void test_shouldRejectRangesOfChangedFile() throws IOException {
+        try (RangeHttpServer server = new RangeHttpServer(content, ETAG)) {
+            // Given
+            server.changeEtagAfterRanges(3, "\"v2\"");
+
+            // When
+            assertThrows(ChunkedDownloader.RangeRejectedException.class, () -> downloader(server, 1, 0, new AtomicLong()).download(file, CONTENT_LENGTH, ETAG));
+
+            // Then
+            server.clearRequests();
+            downloader(server, 1, 0, new AtomicLong()).download(file, CONTENT_LENGTH, "\"v2\"");
+
+            // A range of the failed download may still arrive, it is requested again anyway
+            assertEquals(allRanges(), sorted(server.getRequestedRanges().stream().distinct().collect(Collectors.toList())), "Ranges of the previous file are not reused");
+            assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        }
+    }
+
+    @Test
+    public void test_shouldRejectRangesWithAnotherEtag() throws IOException {
+        try (RangeHttpServer server = new RangeHttpServer(content, ETAG)) {
+            // Given
+            server.setIgnoreIfRange(true);
+            server.changeEtagAfterRanges(3, "\"v2\"");
+
+            // When
+            assertThrows(ChunkedDownloader.RangeRejectedException.class, () -> downloader(server, 1, 0, new AtomicLong()).download(file, CONTENT_LENGTH, ETAG));
+
+            // Then
+            assertTrue(server.getRequestedRanges().contains(3 * CHUNK_SIZE));
+            assertTrue(ChunkedDownloader.getPartsFile(file).exists());
+        }
+    }
+
+}
@@ -20,13 +20,12 @@ import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
-import java.io.IOException;
+import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
-import static org.junit.jupiter.api.Assertions.assertFalse;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class FileHelperTest {
 
@@ -72,6 +71,20 @@ public class FileHelperTest {
         assertFalse(Files.exists(FOLDER_TEST));
     }
 
+    @Test
+    public void test_shouldOpenZipEntryWithoutUnzipping() throws Exception {
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(FileHelper.openZipEntry(new File("padron_reducido_ruc.zip"), "txt")))) {
+            String header = br.readLine();
+            assertNotNull(header);
+            assertTrue(header.startsWith("RUC|"));
+        }
+    }
+
+    @Test
+    public void test_shouldThrowExceptionIfZipEntryDoesNotExists() {
+        assertThrows(FileNotFoundException.class, () -> FileHelper.openZipEntry(new File("padron_reducido_ruc.zip"), "csv"));
+    }
+
 //    @Test
 //    public void test_unzipFile() throws Exception {
 //        Path unzipPath = FOLDER_TEST.resolve("unzipFolder");
@@ -82,4 +95,10 @@ public class FileHelperTest {
 //        assertTrue(Files.exists(unzipPath.resolve("padron_reducido_ruc.txt")));
 //    }
 
+    @Test
+    public void test_shouldComputeSha256AsHex() {
+        byte[] digest = FileHelper.createSha256Digest().digest("abc".getBytes());
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", FileHelper.toHex(digest));
+    }
+
 }
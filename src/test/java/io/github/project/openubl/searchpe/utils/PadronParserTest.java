@@ -0,0 +1,104 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PadronParserTest {
+
+    @Test
+    public void test_shouldSplitTrimAndNullifyColumns() throws Exception {
+        PadronParser parser = new PadronParser(new StringReader("RUC|NOMBRE\r\n 20272209325 |PESCA PERU| - ||150122|\r\n"));
+
+        List<String[]> rows = new ArrayList<>();
+        long count = parser.parse(true, row -> {
+            String[] columns = new String[PadronParser.COLUMNS];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = row.getString(i);
+            }
+            rows.add(columns);
+        });
+
+        assertEquals(1, count);
+        assertEquals("20272209325", rows.get(0)[PadronParser.RUC]);
+        assertEquals("PESCA PERU", rows.get(0)[PadronParser.RAZON_SOCIAL]);
+        assertNull(rows.get(0)[PadronParser.ESTADO_CONTRIBUYENTE]);
+        assertNull(rows.get(0)[PadronParser.CONDICION_DOMICILIO]);
+        assertEquals("150122", rows.get(0)[PadronParser.UBIGEO]);
+        assertNull(rows.get(0)[PadronParser.KILOMETRO]);
+    }
+
+    @Test
+    public void test_shouldReadLinesLongerThanBuffer() throws Exception {
+        PadronParser parser = new PadronParser(new StringReader("11111111111|RAZON SOCIAL 1|ACTIVO\n22222222222|RAZON SOCIAL 2|ACTIVO"), 8);
+
+        assertTrue(parser.nextRow());
+        assertEquals("RAZON SOCIAL 1", parser.getRow().getString(PadronParser.RAZON_SOCIAL));
+        assertTrue(parser.nextRow());
+        assertEquals("22222222222", parser.getRow().getString(PadronParser.RUC));
+        assertFalse(parser.nextRow());
+    }
+
+    @Test
+    public void test_shouldShareLowCardinalityValues() throws Exception {
+        PadronParser parser = new PadronParser(new StringReader("11111111111|A|ACTIVO|HABIDO\n22222222222|B|ACTIVO|HABIDO\n"));
+
+        assertTrue(parser.nextRow());
+        String estado1 = parser.getRow().getString(PadronParser.ESTADO_CONTRIBUYENTE);
+        String ruc1 = parser.getRow().getString(PadronParser.RUC);
+        assertTrue(parser.nextRow());
+        String estado2 = parser.getRow().getString(PadronParser.ESTADO_CONTRIBUYENTE);
+
+        assertSame(estado1, estado2);
+        assertNotSame(ruc1, parser.getRow().getString(PadronParser.RUC));
+    }
+
+    @Test
+    public void test_shouldMatchDataHelperReadLine() throws Exception {
+        File zipFile = new File("padron_reducido_ruc.zip");
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(FileHelper.openZipEntry(zipFile, "txt")));
+             InputStreamReader reader = new InputStreamReader(FileHelper.openZipEntry(zipFile, "txt"))
+        ) {
+            PadronParser parser = new PadronParser(reader);
+
+            br.readLine();
+            parser.nextRow();
+
+            String line;
+            while ((line = br.readLine()) != null) {
+                assertTrue(parser.nextRow());
+
+                String[] columns = DataHelper.readLine(line, PadronParser.COLUMNS);
+                for (int i = 0; i < columns.length; i++) {
+                    String expected = columns[i] != null ? columns[i].trim() : null;
+                    assertEquals(expected, parser.getRow().getString(i), "Line:" + line);
+                }
+            }
+            assertFalse(parser.nextRow());
+        }
+    }
+
+}
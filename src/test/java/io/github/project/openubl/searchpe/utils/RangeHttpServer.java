@@ -0,0 +1,178 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local HTTP server of a single file for download tests. It answers HEAD and byte ranges with 'If-Range',
+ * and can be told to ignore ranges, ignore 'If-Range', fail a range or change the ETag of the file.
+ */
+public class RangeHttpServer implements Closeable {
+
+    private final byte[] content;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private volatile String etag;
+    private volatile boolean ignoreRanges;
+    private volatile boolean ignoreIfRange;
+    private volatile long failingRangeStart = -1;
+
+    private volatile int changeEtagAfterRanges = -1;
+    private volatile String changedEtag;
+    private final AtomicInteger servedRanges = new AtomicInteger();
+
+    private final List<Long> requestedRanges = new ArrayList<>();
+    private final List<String> requestedIfRanges = new ArrayList<>();
+
+    public RangeHttpServer(byte[] content, String etag) throws IOException {
+        this.content = content;
+        this.etag = etag;
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/padron.zip", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public URL getUrl() throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/padron.zip");
+    }
+
+    /**
+     * Answer ranges with the whole file, like a server not supporting them
+     */
+    public void setIgnoreRanges(boolean ignoreRanges) {
+        this.ignoreRanges = ignoreRanges;
+    }
+
+    /**
+     * Answer ranges even if 'If-Range' does not match the ETag
+     */
+    public void setIgnoreIfRange(boolean ignoreIfRange) {
+        this.ignoreIfRange = ignoreIfRange;
+    }
+
+    /**
+     * Answer 500 to the range starting at the given position, -1 for none
+     */
+    public void setFailingRangeStart(long failingRangeStart) {
+        this.failingRangeStart = failingRangeStart;
+    }
+
+    /**
+     * Change the ETag once the given number of ranges were sent, as if the file was replaced
+     */
+    public void changeEtagAfterRanges(int ranges, String newEtag) {
+        this.changedEtag = newEtag;
+        this.changeEtagAfterRanges = ranges;
+    }
+
+    /**
+     * @return start of every range requested, in order of arrival
+     */
+    public synchronized List<Long> getRequestedRanges() {
+        return new ArrayList<>(requestedRanges);
+    }
+
+    /**
+     * @return 'If-Range' of every range requested, in order of arrival
+     */
+    public synchronized List<String> getRequestedIfRanges() {
+        return new ArrayList<>(requestedIfRanges);
+    }
+
+    public synchronized void clearRequests() {
+        requestedRanges.clear();
+        requestedIfRanges.clear();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String currentEtag = etag;
+            exchange.getResponseHeaders().set("ETag", currentEtag);
+            exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.getResponseHeaders().set("Content-Length", String.valueOf(content.length));
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (range == null) {
+                send(exchange, 200, 0, content.length);
+                return;
+            }
+
+            String[] bounds = range.substring("bytes=".length()).split("-");
+            long start = Long.parseLong(bounds[0]);
+            long end = Long.parseLong(bounds[1]) + 1;
+            String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+            synchronized (this) {
+                requestedRanges.add(start);
+                requestedIfRanges.add(ifRange);
+            }
+
+            if (ignoreRanges || (!ignoreIfRange && ifRange != null && !ifRange.equals(currentEtag))) {
+                send(exchange, 200, 0, content.length);
+                return;
+            }
+            if (start == failingRangeStart) {
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+
+            // Changed before sending, the next range may be requested as soon as this one is read
+            if (servedRanges.incrementAndGet() == changeEtagAfterRanges) {
+                etag = changedEtag;
+            }
+
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + content.length);
+            send(exchange, 206, (int) start, (int) end);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, int start, int end) throws IOException {
+        exchange.sendResponseHeaders(status, end - start);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(content, start, end - start);
+        }
+    }
+
+}
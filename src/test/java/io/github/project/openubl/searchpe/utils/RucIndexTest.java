@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019 Project OpenUBL, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Eclipse Public License - v 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.project.openubl.searchpe.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RucIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static String[] row(String ruc, String razonSocial, String ubigeo) {
+        String[] columns = new String[PadronParser.COLUMNS];
+        columns[PadronParser.RUC] = ruc;
+        columns[PadronParser.RAZON_SOCIAL] = razonSocial;
+        columns[PadronParser.ESTADO_CONTRIBUYENTE] = "ACTIVO";
+        columns[PadronParser.UBIGEO] = ubigeo;
+        return columns;
+    }
+
+    @Test
+    public void test_shouldFindWrittenRows() throws IOException {
+        Path file = tempDir.resolve("ruc-index.bin");
+        try (RucIndexWriter writer = new RucIndexWriter(file, 7L)) {
+            writer.add(row("10000000001", "PERSONA NATURAL", "150101"));
+            writer.add(row("20272209325", "PESCA PERÚ S.A.", null));
+            writer.add(row("20600000001", "EMPRESA", "040101"));
+            assertEquals(3, writer.finish());
+        }
+
+        // Only the final file is left
+        try (var files = Files.list(tempDir)) {
+            assertEquals(1, files.count());
+        }
+
+        try (RucIndex index = RucIndex.open(file)) {
+            assertEquals(7L, index.getVersionId());
+            assertEquals(3, index.getCount());
+
+            Optional<String[]> columns = index.find("20272209325");
+            assertTrue(columns.isPresent());
+            assertEquals("20272209325", columns.get()[PadronParser.RUC]);
+            assertEquals("PESCA PERÚ S.A.", columns.get()[PadronParser.RAZON_SOCIAL]);
+            assertEquals("ACTIVO", columns.get()[PadronParser.ESTADO_CONTRIBUYENTE]);
+            assertNull(columns.get()[PadronParser.UBIGEO]);
+            assertNull(columns.get()[PadronParser.KILOMETRO]);
+
+            assertEquals("150101", index.find("10000000001").get()[PadronParser.UBIGEO]);
+            assertEquals("040101", index.find("20600000001").get()[PadronParser.UBIGEO]);
+
+            assertFalse(index.find("20000000000").isPresent());
+            assertFalse(index.find("99999999999").isPresent());
+            assertFalse(index.find("2027220932").isPresent());
+            assertFalse(index.find("2027220932X").isPresent());
+        }
+    }
+
+    @Test
+    public void test_shouldOpenEmptyIndex() throws IOException {
+        Path file = tempDir.resolve("ruc-index.bin");
+        try (RucIndexWriter writer = new RucIndexWriter(file, 1L)) {
+            assertEquals(0, writer.finish());
+        }
+
+        try (RucIndex index = RucIndex.open(file)) {
+            assertEquals(0, index.getCount());
+            assertFalse(index.find("20272209325").isPresent());
+        }
+    }
+
+    @Test
+    public void test_shouldRejectUnsortedRows() throws IOException {
+        Path file = tempDir.resolve("ruc-index.bin");
+        try (RucIndexWriter writer = new RucIndexWriter(file, 1L)) {
+            writer.add(row("20600000001", "EMPRESA", null));
+            assertThrows(IOException.class, () -> writer.add(row("20272209325", "PESCA PERU", null)));
+            assertThrows(IOException.class, () -> writer.add(row("20600000001", "EMPRESA", null)));
+        }
+
+        // Nothing is left behind by an unfinished writer
+        try (var files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void test_shouldRejectTruncatedFile() throws IOException {
+        Path file = tempDir.resolve("ruc-index.bin");
+        try (RucIndexWriter writer = new RucIndexWriter(file, 1L)) {
+            writer.add(row("20272209325", "PESCA PERU", null));
+            writer.finish();
+        }
+        Files.write(file, new byte[]{1, 2, 3});
+
+        assertThrows(IOException.class, () -> RucIndex.open(file));
+    }
+
+}